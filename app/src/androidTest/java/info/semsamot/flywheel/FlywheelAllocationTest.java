@@ -0,0 +1,178 @@
+package info.semsamot.flywheel;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.view.MotionEvent;
+import android.view.View.MeasureSpec;
+
+/**
+ * Scrolls a laid out Flywheel through many frames and fails if drawing allocates.
+ */
+public class FlywheelAllocationTest extends AndroidTestCase {
+
+    private static final int SIZE = 400;
+    private static final int FRAMES = 500;
+    private static final int FLING_FRAME_MILLIS = 16;
+    private static final int MAX_FLING_FRAMES = 400;
+
+    private Flywheel flywheel;
+    private Canvas canvas;
+    // a drag and fling down and then up, if frames are driven by touch
+    private MotionEvent[][] flings;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        // GestureDetector of Flywheel needs a looper
+        if (Looper.myLooper() == null) Looper.prepare();
+
+        flywheel = new Flywheel(getContext());
+        for (int i=0; i < 1000; i++)
+        {
+            flywheel.addItem("item number " + i);
+        }
+
+        int spec = MeasureSpec.makeMeasureSpec(SIZE, MeasureSpec.EXACTLY);
+        flywheel.measure(spec, spec);
+        flywheel.layout(0, 0, SIZE, SIZE);
+
+        canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    public void testOffscreen3dDrawing() {
+        assertNoAllocations();
+    }
+
+    public void testDirect3dDrawing() {
+        flywheel.setDirectCompositing(true);
+        assertNoAllocations();
+    }
+
+    public void testHorizontalDrawing() {
+        flywheel.setOrientation("horizontal");
+        assertNoAllocations();
+    }
+
+    public void testFlatDrawing() {
+        flywheel.set3dEffect(false);
+        assertNoAllocations();
+    }
+
+    public void testLowMemoryDrawing() {
+        flywheel.setLowMemoryMode(true);
+        assertNoAllocations();
+    }
+
+    public void testTileCacheDrawing() {
+        flywheel.setItemTileCacheSize(4 * 1024 * 1024);
+        assertNoAllocations();
+    }
+
+    public void testMetricsDrawing() {
+        flywheel.setMetricsEnabled(true);
+        assertNoAllocations();
+        assertTrue(flywheel.getMetrics().getFrameCount() > 0);
+    }
+
+    public void testFlingFrames() {
+        flings = new MotionEvent[][] { obtainFling(SIZE - 50, 50), obtainFling(50, SIZE - 50) };
+        flywheel.setMetricsEnabled(true);
+        assertNoAllocations();
+        // both passes really flung
+        assertEquals(2 * flings.length, flywheel.getMetrics().getFlingCount());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (flings != null)
+        {
+            for (MotionEvent[] fling : flings)
+            {
+                for (MotionEvent event : fling) event.recycle();
+            }
+        }
+
+        super.tearDown();
+    }
+
+    private void assertNoAllocations()
+    {
+        // first pass wraps texts, fills caches and borrows offscreen bitmaps
+        drawFrames();
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+
+        drawFrames();
+
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        assertEquals("allocations while scrolling", 0, allocations);
+    }
+
+    private void drawFrames()
+    {
+        if (flings != null)
+        {
+            flingFrames();
+            return;
+        }
+
+        for (int frame=0; frame < FRAMES; frame++)
+        {
+            flywheel.setScrollPos(frame * 7);
+            flywheel.onDraw(canvas);
+        }
+
+        flywheel.autoCenterItem(10);
+        flywheel.onDraw(canvas);
+    }
+
+    /**
+     * Drives the wheel as a user would: touch events go through its gesture
+     * detector (onScroll, onFling) and fling frames are stepped one by one,
+     * like its frame scheduler does, each of them drawn.
+     */
+    private void flingFrames()
+    {
+        for (MotionEvent[] fling : flings)
+        {
+            for (MotionEvent event : fling) flywheel.onTouchEvent(event);
+
+            for (int frame=0; frame < MAX_FLING_FRAMES && flywheel.computeScrollFrame(); frame++)
+            {
+                flywheel.onDraw(canvas);
+                SystemClock.sleep(FLING_FRAME_MILLIS);
+            }
+            flywheel.onDraw(canvas);
+        }
+    }
+
+    /**
+     * Events of a fast vertical drag between given positions, obtained before
+     * allocations are counted. Times are relative, gesture detector only
+     * uses their differences.
+     */
+    private static MotionEvent[] obtainFling(int fromY, int toY)
+    {
+        final int moves = 10;
+        final int moveMillis = 10;
+        MotionEvent[] events = new MotionEvent[moves + 2];
+
+        events[0] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, SIZE / 2, fromY, 0);
+        for (int i=1; i <= moves; i++)
+        {
+            float y = fromY + (toY - fromY) * i / (float) moves;
+            events[i] = MotionEvent.obtain(0, i * moveMillis, MotionEvent.ACTION_MOVE, SIZE / 2, y, 0);
+        }
+        events[moves + 1] = MotionEvent.obtain(0, moves * moveMillis, MotionEvent.ACTION_UP, SIZE / 2, toY, 0);
+
+        return events;
+    }
+}
@@ -0,0 +1,122 @@
+package info.semsamot.flywheel;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Looper;
+import android.test.AndroidTestCase;
+
+import info.semsamot.flywheel.core.Wheel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that decodes of items which left the wanted window before their
+ * turn are skipped.
+ */
+public class ItemImageLoaderTest extends AndroidTestCase {
+
+    private static final int ITEMS = 100;
+    // more than workers of the loader, so that all of them are kept busy
+    private static final int BLOCKERS = 4;
+    private static final int STALE = 20;
+    private static final int LANDING = 2;
+
+    private Flywheel flywheel;
+    private Wheel wheel;
+    private ItemImageLoader loader;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        // GestureDetector of Flywheel needs a looper
+        if (Looper.myLooper() == null) Looper.prepare();
+
+        flywheel = new Flywheel(getContext());
+        wheel = new Wheel();
+        wheel.setItemCount(ITEMS);
+        loader = new ItemImageLoader(1024 * 1024, new ItemImageLoader.Callback() {
+            @Override
+            public void onImageLoaded(Item item) {
+            }
+        });
+    }
+
+    public void testStaleRequestsAreSkipped() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch landed = new CountDownLatch(LANDING);
+        final AtomicInteger staleDecodes = new AtomicInteger();
+
+        loader.setWindow(wheel, 0, ITEMS - 1);
+
+        for (int i=0; i < BLOCKERS; i++)
+        {
+            loader.request(itemAt(i, new CountingSource(null) {
+                @Override
+                void onDecode() {
+                    try
+                    {
+                        release.await(5, TimeUnit.SECONDS);
+                    }catch (InterruptedException ignored) {}
+                }
+            }), 10, 10);
+        }
+        for (int i=0; i < STALE; i++)
+        {
+            loader.request(itemAt(ITEMS / 2 + i, new CountingSource(staleDecodes)), 10, 10);
+        }
+        for (int i=0; i < LANDING; i++)
+        {
+            loader.request(itemAt(BLOCKERS + i, new CountingSource(null) {
+                @Override
+                void onDecode() {
+                    landed.countDown();
+                }
+            }), 10, 10);
+        }
+
+        // the wheel is flung past the stale items while workers are busy
+        loader.setWindow(wheel, 0, BLOCKERS + LANDING);
+        release.countDown();
+
+        assertTrue("landing images decoded", landed.await(5, TimeUnit.SECONDS));
+        assertEquals("stale decodes", 0, staleDecodes.get());
+    }
+
+    private Item itemAt(int index, ImageSource source)
+    {
+        Item item = new Item(flywheel);
+        item.index = index;
+        item.imageSource = source;
+        return item;
+    }
+
+    /**
+     * Counts decodes of image bounds and decodes nothing.
+     */
+    private static class CountingSource extends ImageSource
+    {
+        private final AtomicInteger decodes;
+
+        CountingSource(AtomicInteger decodes)
+        {
+            this.decodes = decodes;
+        }
+
+        void onDecode()
+        {
+        }
+
+        @Override
+        public Bitmap decode(BitmapFactory.Options options) {
+            if (options.inJustDecodeBounds)
+            {
+                if (decodes != null) decodes.incrementAndGet();
+                onDecode();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+
+/*
+* Process wide pool of offscreen bitmaps shared by all Flywheel instances.
+* Views borrow their page and strip bitmaps from here and give them back when
+* they are detached, so wheels that come and go (e.g. in dialogs) reuse memory.
+* Bitmaps are matched by size and config; on KitKat and above a bigger bitmap
+* is resized in place when there is no exact match.
+* Oldest bitmaps are dropped when the pool exceeds its budget.
+* */
+public final class BitmapPool
+{
+    private static final ArrayList<Bitmap> bitmaps = new ArrayList<Bitmap>();
+    private static int maxSize = (int) (Runtime.getRuntime().maxMemory() / 16);
+    private static int size;
+
+    private BitmapPool() {}
+
+    public static synchronized int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /*
+    * Sets the budget of pooled (not borrowed) bitmaps in bytes.
+    * */
+    public static synchronized void setMaxSize(int maxBytes)
+    {
+        maxSize = maxBytes;
+        trimToSize(maxSize);
+    }
+
+    public static synchronized void clear()
+    {
+        trimToSize(0);
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    static synchronized Bitmap acquire(int width, int height, Bitmap.Config config)
+    {
+        // most recently released ones first
+        for (int i = bitmaps.size() - 1; i >= 0; i--)
+        {
+            Bitmap bitmap = bitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config)
+                return take(i);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+        {
+            // smallest one that fits, so big (page) bitmaps are kept for big requests
+            int byteCount = width * height * bytesPerPixel(config);
+            int best = -1;
+            for (int i = bitmaps.size() - 1; i >= 0; i--)
+            {
+                int allocation = bitmaps.get(i).getAllocationByteCount();
+                if (allocation >= byteCount &&
+                        (best < 0 || allocation < bitmaps.get(best).getAllocationByteCount()))
+                    best = i;
+            }
+
+            if (best >= 0)
+            {
+                Bitmap bitmap = take(best);
+                bitmap.reconfigure(width, height, config);
+                return bitmap;
+            }
+        }
+
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    static synchronized void release(Bitmap bitmap)
+    {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) return;
+
+        bitmaps.add(bitmap);
+        size += byteCountOf(bitmap);
+        trimToSize(maxSize);
+    }
+
+    static int bytesPerPixel(Bitmap.Config config)
+    {
+        switch (config)
+        {
+            case ALPHA_8: return 1;
+            case RGB_565:
+            case ARGB_4444: return 2;
+            default: return 4;
+        }
+    }
+
+    private static Bitmap take(int index)
+    {
+        Bitmap bitmap = bitmaps.remove(index);
+        size -= byteCountOf(bitmap);
+        return bitmap;
+    }
+
+    private static void trimToSize(int maxBytes)
+    {
+        while (size > maxBytes && !bitmaps.isEmpty())
+        {
+            take(0);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static int byteCountOf(Bitmap bitmap)
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+            return bitmap.getAllocationByteCount();
+        return bitmap.getByteCount();
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.graphics.Paint;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import info.semsamot.flywheel.core.TextChunk;
+import info.semsamot.flywheel.core.TextMeasurer;
+
+/*
+* Wraps text of many items on a pool of worker threads (one per core).
+* Visible items are wrapped right away on the UI thread, the rest are handed to
+* workers in order of their distance from the visible ones. Each worker has its
+* own Paint and posts finished text chunks back to the UI thread in batches,
+* where they are applied only if the item has not changed in the meantime.
+* Must be started and cancelled from the UI thread.
+* */
+class BulkTextLayout
+{
+    private static final int BATCH_SIZE = 64;
+    private static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static ExecutorService executor;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private volatile int generation;
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "Flywheel text layout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /*
+    * Wraps all given items, which must all have a rect of given size.
+    * */
+    public void start(List<Item> items, int firstVisible, int lastVisible, int width, int height)
+    {
+        cancel();
+        int itemsSize = items.size();
+        if (itemsSize == 0) return;
+
+        firstVisible = Math.max(0, firstVisible);
+        lastVisible = Math.min(itemsSize - 1, lastVisible);
+
+        for (int i = firstVisible; i <= lastVisible; i++)
+        {
+            items.get(i).ensureTextChunks();
+        }
+
+        // deal others to workers, nearest ones first
+        int workers = Math.min(WORKERS, Math.max(1, itemsSize / BATCH_SIZE));
+        ArrayList<ArrayList<Item>> shares = new ArrayList<ArrayList<Item>>(workers);
+        for (int i = 0; i < workers; i++)
+        {
+            shares.add(new ArrayList<Item>(itemsSize / workers + 1));
+        }
+
+        int dealt = 0;
+        for (int distance = 1; firstVisible - distance >= 0 || lastVisible + distance < itemsSize; distance++)
+        {
+            if (lastVisible + distance < itemsSize)
+                shares.get(dealt++ % workers).add(items.get(lastVisible + distance));
+            if (firstVisible - distance >= 0)
+                shares.get(dealt++ % workers).add(items.get(firstVisible - distance));
+        }
+
+        int generation = this.generation;
+        for (ArrayList<Item> share : shares)
+        {
+            if (!share.isEmpty())
+                getExecutor().execute(new Worker(share, generation, width, height));
+        }
+    }
+
+    public void cancel()
+    {
+        generation++;
+    }
+
+    private class Worker implements Runnable
+    {
+        private final ArrayList<Item> items;
+        private final int generation;
+        private final int width, height;
+
+        Worker(ArrayList<Item> items, int generation, int width, int height)
+        {
+            this.items = items;
+            this.generation = generation;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void run() {
+            TextMeasurer measurer = new PaintTextMeasurer(new Paint());
+            Batch batch = new Batch(width, height);
+
+            for (Item item : items)
+            {
+                if (generation != BulkTextLayout.this.generation) return;
+
+                // version is read before the fields it guards
+                int version = item.textVersion;
+                ArrayList<TextChunk> textChunks = new ArrayList<TextChunk>(2);
+                int lineSpacing = item.wrapText(measurer, width, height, textChunks);
+
+                batch.add(item, version, textChunks, lineSpacing);
+                if (batch.size == BATCH_SIZE)
+                {
+                    handler.post(batch);
+                    batch = new Batch(width, height);
+                }
+            }
+
+            if (batch.size > 0) handler.post(batch);
+        }
+    }
+
+    /*
+    * Wrapped items that are applied together on the UI thread.
+    * Posting it to the handler publishes its content safely.
+    * */
+    private static class Batch implements Runnable
+    {
+        final Item[] items = new Item[BATCH_SIZE];
+        final int[] versions = new int[BATCH_SIZE];
+        final int[] lineSpacings = new int[BATCH_SIZE];
+        final ArrayList<ArrayList<TextChunk>> textChunks =
+                new ArrayList<ArrayList<TextChunk>>(BATCH_SIZE);
+        final int width, height;
+        int size;
+
+        Batch(int width, int height)
+        {
+            this.width = width;
+            this.height = height;
+        }
+
+        void add(Item item, int version, ArrayList<TextChunk> chunks, int lineSpacing)
+        {
+            items[size] = item;
+            versions[size] = version;
+            textChunks.add(chunks);
+            lineSpacings[size] = lineSpacing;
+            size++;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < size; i++)
+            {
+                items[i].applyTextChunks(versions[i], width, height, textChunks.get(i), lineSpacings[i]);
+            }
+        }
+    }
+}
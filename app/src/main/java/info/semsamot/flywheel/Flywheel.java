@@ -18,82 +18,127 @@
 
 package info.semsamot.flywheel;
 
-import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Camera;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.LinearGradient;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Shader;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.view.GestureDetector;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewParent;
 import android.widget.Scroller;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+import info.semsamot.flywheel.core.TextChunk;
+import info.semsamot.flywheel.core.TextIndex;
+import info.semsamot.flywheel.core.TextMeasurer;
+import info.semsamot.flywheel.core.Wheel;
 
 public class Flywheel extends View {
 
     private ArrayList<Item> items = new ArrayList<Item>();
 
+    // items are either added through addItem, or bound on demand from adapter
+    private Adapter adapter;
+    private SparseArray<Item> boundItems = new SparseArray<Item>();
+    private ArrayList<Item> recycledItems = new ArrayList<Item>();
+    private static final int BOUND_ITEMS_MARGIN = 2;
+
+    // texts of items to positions; null when it must be rebuilt
+    private TextIndex textIndex;
+    private static final int TYPE_TO_SEEK_TIMEOUT = 1000;
+    private final StringBuilder typedPrefix = new StringBuilder();
+    private long lastTypedTime;
+
+    // scroll position, geometry of items and selection
+    private final Wheel wheel = new Wheel();
+
     private boolean isVertical = true;
     private int containerWidth, containerHeight;
-    private int scrollPos = 0;
-    private int maxPositionValue;
     private int horizontalItemPadding = 20;
-    private int textBelowImagePadding = 5;
+    int textBelowImagePadding = 5;
     private int defaultTextColor = Color.DKGRAY;
 
-    private Item selectedItem;
-
     private Paint paint;
+    // used by items for measuring text on UI thread
+    final TextMeasurer textMeasurer = new PaintTextMeasurer(new Paint());
 
-    private Matrix mMatrix;
-    private Camera mCamera;
-
-    private LinearGradient pageTopGradient, pageBottomGradient;
-    private LinearGradient pageLeftGradient, pageRightGradient;
+    private boolean backgroundTextLayout = false;
+    private BulkTextLayout bulkTextLayout;
 
-    private Bitmap pageBitmap;
-    private Canvas pageCanvas;
+    // null unless metrics are enabled
+    FlywheelMetrics metrics;
+    private OnFrameMetricsListener onFrameMetricsListener;
 
-    private Bitmap pageTopBitmap, pageGirdleBitmap, pageBottomBitmap;
-    private Bitmap pageLeftBitmap, pageMiddleBitmap, pageRightBitmap;
+    private GradientCache gradientCache = new GradientCache(8);
+    private ItemTileCache itemTileCache;
 
-    private Canvas pageTopCanvas, pageGirdleCanvas, pageBottomCanvas;
-    private Canvas pageLeftCanvas, pageMiddleCanvas, pageRightCanvas;
+    // created when first item with an image source is drawn
+    private ItemImageLoader imageLoader;
+    private int imageCacheSize = (int) (Runtime.getRuntime().maxMemory() / 16);
+    private final Paint imagePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect imageRect = new Rect();
 
-    private Rect vSidesOfPageRect, bottomOfPageRect;
-    private Rect sidesOfPageRect, rightOfPageRect;
-    private Rect girdleOfPageSrcRect, girdleOfPageDstRect;
-    private Rect middleOfPageSrcRect, middleOfPageDstRect;
-
-    private int topSideOfPage, bottomSideOfPage;
-    private int leftSideOfPage, rightSideOfPage;
+    private final PageCompositor compositor = new PageCompositor();
+    private final PageCompositor.PageRenderer pageRenderer = new PageCompositor.PageRenderer() {
+        @Override
+        public void drawPage(Canvas canvas) {
+            Flywheel.this.drawPage(canvas);
+        }
+    };
 
     private boolean page3dEffect = true;
-    private int pageBackgroundColor = Color.WHITE;
+    private boolean directCompositing = false;
+    private boolean lowMemoryMode = false;
     private Drawable backgroundDrawable;
 
     private GestureDetector detector;
     private Scroller scroller;
     private ScrollListener scrollListener;
-    private ValueAnimator scrollAnimator;
+
+    private static final int AUTO_CENTER_DURATION = 500;
+
+    private FrameScheduler frameScheduler = new FrameScheduler(this, new FrameScheduler.Callback() {
+        @Override
+        public boolean onFrame() {
+            return computeScrollFrame();
+        }
+    });
+    private int drawnScrollPos = Integer.MIN_VALUE;
 
     private OnAutoCenterListener onAutoCenterListener;
 
+    private final SelectionDispatcher selectionDispatcher = new SelectionDispatcher();
+    // true while a fling or auto center is running toward selected item
+    private boolean isSettling;
+
+    private OnPrefetchListener onPrefetchListener;
+    // last reported (virtual) indices, so that only changes are reported
+    private int prefetchedFrom, prefetchedLanding;
+
+    // view that draws this wheel instead of it (and its parent then), if any
+    private Host host;
+    private ViewParent hostParent;
+
+    // offset of restored scroll position from center of selected item, in slices
+    private float pendingScrollFraction;
+
     public Flywheel(Context context) {
-        super(context);
+        this(context, null);
     }
 
     public Flywheel(Context context, AttributeSet attrs) {
@@ -105,84 +150,28 @@ public class Flywheel extends View {
     public Flywheel(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
 
+        init();
+
         // set text color from "tag" attribute
         if (getTag() != null)
             setDefaultTextColor( Color.parseColor(getTag().toString()) );
 
         // transfer background color and then remove original background
         this.backgroundDrawable = getBackground();
-        this.pageBackgroundColor = getBackgroundColor(this.backgroundDrawable);
+        compositor.setBackgroundColor(getBackgroundColor(this.backgroundDrawable));
         setBackgroundResource(0);
     }
 
+    /*
+    * Creates objects that do not depend on size of view.
+    * */
     @TargetApi(Build.VERSION_CODES.HONEYCOMB)
-    private void initGfx()
+    private void init()
     {
-        containerWidth = getWidth();
-        containerHeight = getHeight();
-
-        if (containerWidth == 0 || containerHeight == 0) return;
-
-        this.pageCenterX = containerWidth / 2;
-        this.pageCenterY = containerHeight / 2;
-
         horizontalItemPadding = 7;
         textBelowImagePadding = 2;
 
         paint = new Paint();
-        pageBitmap = Bitmap.createBitmap(containerWidth, containerHeight, Bitmap.Config.ARGB_8888);
-        pageCanvas = new Canvas(pageBitmap);
-
-        mCamera = new Camera();
-        mMatrix = new Matrix();
-
-        topSideOfPage = containerHeight / 5;
-        bottomSideOfPage = topSideOfPage * 4;
-        leftSideOfPage = containerWidth / 5;
-        rightSideOfPage = leftSideOfPage * 4;
-
-        int middleOfPageWidth = leftSideOfPage * 3;
-        int girdleOfPageHeight = topSideOfPage * 3;
-
-        pageTopGradient = new LinearGradient(
-                0, 0, 0, topSideOfPage,
-                Color.TRANSPARENT, pageBackgroundColor, Shader.TileMode.CLAMP);
-        pageBottomGradient = new LinearGradient(
-                0, 0, 0, topSideOfPage,
-                pageBackgroundColor, Color.TRANSPARENT, Shader.TileMode.CLAMP);
-
-        pageLeftGradient = new LinearGradient(
-                0, pageCenterY, leftSideOfPage, pageCenterY,
-                Color.TRANSPARENT, pageBackgroundColor, Shader.TileMode.CLAMP);
-        pageRightGradient = new LinearGradient(
-                0, pageCenterY, leftSideOfPage, pageCenterY,
-                pageBackgroundColor, Color.TRANSPARENT, Shader.TileMode.CLAMP);
-
-        pageTopBitmap = Bitmap.createBitmap(containerWidth, topSideOfPage, Bitmap.Config.ARGB_8888);
-        pageGirdleBitmap = Bitmap.createBitmap(containerWidth, girdleOfPageHeight, Bitmap.Config.ARGB_8888);
-        pageBottomBitmap = Bitmap.createBitmap(containerWidth, topSideOfPage, Bitmap.Config.ARGB_8888);
-
-        pageLeftBitmap = Bitmap.createBitmap(leftSideOfPage, containerHeight, Bitmap.Config.ARGB_8888);
-        pageMiddleBitmap = Bitmap.createBitmap(middleOfPageWidth, containerHeight, Bitmap.Config.ARGB_8888);
-        pageRightBitmap = Bitmap.createBitmap(leftSideOfPage, containerHeight, Bitmap.Config.ARGB_8888);
-
-        pageTopCanvas = new Canvas(pageTopBitmap);
-        pageGirdleCanvas = new Canvas(pageGirdleBitmap);
-        pageBottomCanvas = new Canvas(pageBottomBitmap);
-
-        pageLeftCanvas = new Canvas(pageLeftBitmap);
-        pageMiddleCanvas = new Canvas(pageMiddleBitmap);
-        pageRightCanvas = new Canvas(pageRightBitmap);
-
-        vSidesOfPageRect = new Rect(0, 0, containerWidth, topSideOfPage);
-        girdleOfPageSrcRect = new Rect(0, topSideOfPage, containerWidth, bottomSideOfPage);
-        girdleOfPageDstRect = new Rect(0, 0, containerWidth, girdleOfPageHeight);
-        bottomOfPageRect = new Rect(0, bottomSideOfPage, containerWidth, containerHeight);
-
-        sidesOfPageRect = new Rect(0, 0, leftSideOfPage, containerHeight);
-        middleOfPageSrcRect = new Rect(leftSideOfPage, 0, rightSideOfPage, containerHeight);
-        middleOfPageDstRect = new Rect(0, 0, middleOfPageWidth, containerHeight);
-        rightOfPageRect = new Rect(rightSideOfPage, 0, containerWidth, containerHeight);
 
         desiredRect = new Rect();
 
@@ -194,33 +183,23 @@ public class Flywheel extends View {
             scroller = new Scroller(appContext, null, true);
         else
             scroller = new Scroller(appContext, null);
+    }
 
-        scrollAnimator = ValueAnimator.ofFloat(0, 1);
-        scrollAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                if (!scroller.isFinished())
-                {
-                    scroller.computeScrollOffset();
-                    scrollPos = (isVertical) ? scroller.getCurrY() : scroller.getCurrX();
-                    postInvalidate();
-
-                    if (scrollPos <= 0 || scrollPos >= maxPositionValue)
-                    {
-//                        scrollAnimator.cancel();
-                        scroller.forceFinished(true);
-//                        return;
-                    }
-                }else {
-                    scrollAnimator.cancel();
+    /*
+    * Rebuilds state that depends on size of view.
+    * */
+    private void initGfx()
+    {
+        containerWidth = getWidth();
+        containerHeight = getHeight();
+        wheel.setSize(containerWidth, containerHeight);
 
-                    autoCenterItem();
-                }
-            }
-        });
+        if (containerWidth == 0 || containerHeight == 0) return;
+
+        compositor.setSize(containerWidth, containerHeight);
 
         boolean isSampleItems = false;
-        if (items.size() < 1)
+        if (adapter == null && items.size() < 1)
         {
             addItem("sample1");
             addItem("sample2");
@@ -230,18 +209,86 @@ public class Flywheel extends View {
             isSampleItems = true;
         }
 
-        lastPos = (isVertical) ? containerHeight / 3 : containerWidth / 3;
+        layoutItems();
+
+        if (isSampleItems) autoCenterItem(2);
+
+        if (runAfterInit != null) runAfterInit.run();
+    }
+
+    /*
+    * Recomputes geometry of items (after a size or orientation change)
+    * and brings selected item to center.
+    * */
+    private void layoutItems()
+    {
+        gradientCache.setGeometry(isVertical, containerWidth, containerHeight);
+
+        // text of items is wrapped lazily when they become visible
         for (Item item : items)
         {
             calculateItemRect(item);
-            item.initTextChunks();
         }
+        // bound items will be bound again with new geometry
+        recycleBoundItems(0, -1);
+        // images are decoded for size of items
+        if (imageLoader != null) imageLoader.clear();
 
-        this.itemWidth = (isVertical) ? containerHeight / 3 : containerWidth / 3;
+        scroller.forceFinished(true);
+        wheel.centerSelectedItem();
+        applyPendingScrollFraction();
 
-        if (isSampleItems) autoCenterItem(2);
+        if (backgroundTextLayout) startBulkTextLayout();
+    }
 
-        if (runAfterInit != null) runAfterInit.run();
+    private void startBulkTextLayout()
+    {
+        if (adapter != null || !wheel.isLaidOut()) return;
+
+        if (bulkTextLayout == null) bulkTextLayout = new BulkTextLayout();
+
+        int itemWidth = (isVertical) ? containerWidth : wheel.getSlice();
+        int itemHeight = (isVertical) ? wheel.getSlice() : containerHeight;
+
+        bulkTextLayout.start(items, wheel.getFirstVisibleIndex(), wheel.getLastVisibleIndex(),
+                itemWidth, itemHeight);
+    }
+
+    /*
+    * Advances fling or auto center animation by one frame and invalidates
+    * only if scroll position has really changed. Both end on an item center.
+    * Returns true while there is an animation running.
+    * */
+    boolean computeScrollFrame()
+    {
+        boolean isAnimating = false;
+
+        if (scroller.computeScrollOffset())
+        {
+            wheel.setScrollPos((isVertical) ? scroller.getCurrY() : scroller.getCurrX());
+            isAnimating = true;
+        }
+
+        if (wheel.getScrollPos() != drawnScrollPos)
+        {
+            // a host may redraw less when only scroll position has changed
+            if (isHosted())
+                host.onWheelScrolled();
+            else
+                invalidate();
+            selectionDispatcher.centerItemChanged(wheel.getCenterIndex());
+
+            // scroll position of a cyclic wheel is wrapped, unlike that of scroller
+            if (isAnimating && isSettling) dispatchPrefetch(wheel.getScrollPos() + getRemainingScroll(), false);
+        }
+
+        if (!isAnimating && isSettling)
+        {
+            isSettling = false;
+            selectionDispatcher.selectionSettled(wheel.getSelectedIndex());
+        }
+
+        return isAnimating;
     }
 
     private Runnable runAfterInit;
@@ -249,82 +296,154 @@ public class Flywheel extends View {
         this.runAfterInit = runAfterInit;
     }
 
-    private int pageCenterX, pageCenterY;
-    private int itemWidth;
     private boolean isWhite;
     private Rect desiredRect;
     @Override
     protected void onDraw(Canvas viewCanvas) {
-        int itemsSize = items.size();
-        int rightOfScreen = scrollPos + containerWidth;
-        int bottomOfScreen = scrollPos + containerHeight;
+        // host draws this wheel instead
+        if (isHosted()) return;
 
-        pageBitmap.eraseColor(Color.TRANSPARENT);
-
-        for (int i=0; i < itemsSize; i++)
+        if (metrics == null)
         {
-            isWhite = !isWhite;
+            drawFrame(viewCanvas);
+            return;
+        }
 
-            Item item = items.get(i);
-            if ( isVertical && (item.rect.bottom < scrollPos || item.rect.top > bottomOfScreen) )
-            {
-                continue;
-            }else if (!isVertical && (item.rect.right < scrollPos || item.rect.left > rightOfScreen) )
+        FlywheelMetrics.beginSection("Flywheel.onDraw");
+        long startTime = System.nanoTime();
+        metrics.beginFrame();
+
+        drawFrame(viewCanvas);
+
+        metrics.endFrame(System.nanoTime() - startTime);
+        FlywheelMetrics.endSection();
+
+        if (onFrameMetricsListener != null) onFrameMetricsListener.onFrameMetrics(metrics);
+    }
+
+    private void drawFrame(Canvas viewCanvas)
+    {
+        drawnScrollPos = wheel.getScrollPos();
+
+        if (directCompositing && canCompositeDirectly(viewCanvas))
+        {
+            if (!page3dEffect)
             {
-                continue;
+                drawPage(viewCanvas);
+            }else {
+                compositor.drawPageIn3D(viewCanvas, pageRenderer);
             }
+            return;
+        }
+
+        drawPage(compositor.beginPage());
+
+        // with direct compositing items are drawn in the middle of it, so it is not measured
+        long startTime = 0;
+        if (metrics != null)
+        {
+            FlywheelMetrics.beginSection("Flywheel.composite");
+            startTime = System.nanoTime();
+        }
 
+        if (page3dEffect)
+            compositor.drawPageIn3D(viewCanvas, defaultTextColor);
+        else
+            compositor.drawPageFlat(viewCanvas, defaultTextColor);
+
+        if (metrics != null)
+        {
+            metrics.lastCompositingNanos = System.nanoTime() - startTime;
+            FlywheelMetrics.endSection();
+        }
+    }
+
+    /*
+    * Before Android 4.3 hardware canvas can not clip under a perspective matrix,
+    * so the bands would bleed into each other.
+    * */
+    private boolean canCompositeDirectly(Canvas canvas)
+    {
+        return !page3dEffect || !canvas.isHardwareAccelerated() ||
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    /*
+    * Draws items (and page borders) in page coordinates.
+    * */
+    private void drawPage(Canvas canvas)
+    {
+        if (!wheel.isLaidOut()) return;
+
+        drawItems(canvas, wheel.getScrollPos(), wheel.getFirstVisibleIndex(), wheel.getLastVisibleIndex());
+        drawPageBorders(canvas);
+    }
+
+    /*
+    * Draws items first to last (virtual) as they are placed when page starts
+    * at given scroll position.
+    * */
+    private void drawItems(Canvas canvas, int scrollPos, int firstVisible, int lastVisible)
+    {
+        int itemsSize = getItemCount();
+
+        if (adapter != null)
+            recycleBoundItems(firstVisible - BOUND_ITEMS_MARGIN, lastVisible + BOUND_ITEMS_MARGIN);
+
+        long startTime = 0;
+        if (metrics != null)
+        {
+            FlywheelMetrics.beginSection("Flywheel.drawItems");
+            startTime = System.nanoTime();
+        }
+
+        boolean isCyclic = wheel.isCyclic();
+        int slice = wheel.getSlice();
+
+        // indices are virtual for a cyclic wheel, so an item may be drawn rounds away from its rect
+        for (int i=firstVisible; i <= lastVisible; i++)
+        {
+            int itemIndex = wheel.toItemIndex(i);
+            isWhite = (itemIndex % 2 == 0);
+
+            Item item = getItemAt(itemIndex);
+            item.ensureTextChunks();
+
+            int offset = (i - itemIndex) * slice - scrollPos;
             desiredRect.set(item.rect);
             if (isVertical)
             {
-                desiredRect.offset(0, -scrollPos);
+                desiredRect.offset(0, offset);
             }else {
-                desiredRect.offset(-scrollPos, 0);
+                desiredRect.offset(offset, 0);
             }
 
             // uncomment for debugging purposes
             // --------------------------------
             /*paint.setColor( (isWhite) ? Color.WHITE : Color.BLUE );
-            pageCanvas.drawRect(desiredRect, paint);*/
+            canvas.drawRect(desiredRect, paint);*/
             // --------------------------------
 
-            // TODO use LRU Cache for LinearGradient object to achieve best performance
-            LinearGradient completeGradient;
-            if (isVertical)
-            {
-                completeGradient = new LinearGradient(
-                        0, 0, 0, containerHeight,
-                        new int[]{Color.TRANSPARENT, item.textColor, item.textColor, Color.TRANSPARENT},
-                        new float[]{0f, 0.3f, 0.7f, 1f}, Shader.TileMode.CLAMP
-                );
-            }else {
-                completeGradient = new LinearGradient(
-                        0, pageCenterY, containerWidth, 0,
-                        new int[]{Color.TRANSPARENT, item.textColor, item.textColor, Color.TRANSPARENT},
-                        new float[]{0f, 0.3f, 0.7f, 1f}, Shader.TileMode.CLAMP
-                );
-            }
-
-            paint.setShader(completeGradient);
+            paint.setShader(gradientCache.get(item.textColor));
             paint.setStrokeWidth(3);
 
             if (isVertical)
             {
-                pageCanvas.drawLine(desiredRect.left, desiredRect.top,
+                canvas.drawLine(desiredRect.left, desiredRect.top,
                         desiredRect.right, desiredRect.top, paint);
                 // if its last item, then draw another line on the bottom.
-                if (i == itemsSize - 1)
+                if (i == itemsSize - 1 && !isCyclic)
                 {
-                    pageCanvas.drawLine(desiredRect.left, desiredRect.bottom,
+                    canvas.drawLine(desiredRect.left, desiredRect.bottom,
                             desiredRect.right, desiredRect.bottom, paint);
                 }
             }else {
-                pageCanvas.drawLine(desiredRect.left, desiredRect.top,
+                canvas.drawLine(desiredRect.left, desiredRect.top,
                         desiredRect.left, desiredRect.bottom, paint);
                 // if its last item, then draw another line on the right.
-                if (i == itemsSize - 1)
+                if (i == itemsSize - 1 && !isCyclic)
                 {
-                    pageCanvas.drawLine(desiredRect.right, desiredRect.top,
+                    canvas.drawLine(desiredRect.right, desiredRect.top,
                             desiredRect.right, desiredRect.bottom, paint);
                 }
             }
@@ -332,242 +451,427 @@ public class Flywheel extends View {
 //            paint.setColor(item.textColor);
             paint.setTextSize(item.textSize);
 
+            if (item.hasImage()) drawItemImage(canvas, item);
+
+            Bitmap tile = (itemTileCache != null) ? itemTileCache.getTile(item) : null;
+            if (tile != null)
+            {
+                canvas.drawBitmap(tile, desiredRect.left, desiredRect.top, paint);
+                continue;
+            }
+
             int textChunksSize = (item.textChunks != null) ? item.textChunks.size() : 0;
             for (int j=0; j < textChunksSize; j++)
             {
-                // center text in the rect
-                Item.TextChunk textChunk = item.textChunks.get(j);
-                int offset = ( item.rect.width() - (int) paint.measureText(textChunk.text) ) / 2;
-//                int position = item.rect.left - scrollPos + offset;
-                int position = desiredRect.left + offset;
+                // text is centered in the rect when wrapped
+                TextChunk textChunk = item.textChunks.get(j);
+                int position = desiredRect.left + textChunk.posX;
 
                 if (isVertical)
                 {
-                    pageCanvas.drawText(
+                    canvas.drawText(
                             textChunk.text, position, desiredRect.top + textChunk.posY, paint);
                 }else {
-                    pageCanvas.drawText(textChunk.text, position, textChunk.posY, paint);
+                    canvas.drawText(textChunk.text, position, textChunk.posY, paint);
                 }
             }
         }
 
+        if (imageLoader != null) requestNearbyImages(firstVisible, lastVisible);
+
+        if (metrics != null)
+        {
+            metrics.lastItemsNanos += System.nanoTime() - startTime;
+            metrics.lastItemsDrawn += Math.max(0, lastVisible - firstVisible + 1);
+            FlywheelMetrics.endSection();
+        }
+
         paint.setShader(null);
+    }
+
+    private void drawPageBorders(Canvas canvas)
+    {
         paint.setColor(Color.BLACK);
-        if (isVertical)
+        PageCompositor.drawBorders(canvas, isVertical, containerWidth, containerHeight, paint);
+    }
+
+    /*
+    * Draws image of item at top of its rect (desiredRect), scaled to fit.
+    * An image source is drawn once it is loaded.
+    * */
+    private void drawItemImage(Canvas canvas, Item item)
+    {
+        if (!fitItemImage(item, desiredRect)) return;
+
+        if (item.imageSource != null)
         {
-            pageCanvas.drawLine(0, 0, 0, containerHeight, paint);
-            pageCanvas.drawLine(containerWidth, 0, containerWidth, containerHeight, paint);
+            canvas.drawBitmap(imageLoader.get(item), null, imageRect, imagePaint);
         }else {
-            pageCanvas.drawLine(0, 0, containerWidth, 0, paint);
-            pageCanvas.drawLine(0, containerHeight, containerWidth, containerHeight, paint);
+            item.image.setBounds(imageRect);
+            item.image.draw(canvas);
         }
+    }
 
-        if (page3dEffect)
+    /*
+    * Sets imageRect to where image of item goes when it is drawn in given rect.
+    * An image source that is not loaded yet is requested. Returns false if
+    * there is nothing to draw.
+    * */
+    private boolean fitItemImage(Item item, Rect rect)
+    {
+        int padding = item.textPadding / 2;
+        int left = rect.left + padding;
+        int right = rect.right - padding;
+        int top = rect.top + textBelowImagePadding;
+        int bottom = rect.top + item.getImageHeight(rect.height());
+        if (right <= left || bottom <= top) return false;
+
+        if (item.imageSource != null)
         {
-            if (isVertical)
+            ItemImageLoader loader = getImageLoader();
+            Bitmap bitmap = loader.get(item);
+            if (bitmap == null)
             {
-                drawPageInVertical3D(pageBitmap, viewCanvas);
-            }else {
-                drawPageIn3D(pageBitmap, viewCanvas);
+                loader.request(item, right - left, bottom - top);
+                return false;
             }
+
+            fitImageRect(bitmap.getWidth(), bitmap.getHeight(), left, top, right, bottom);
         }else {
-            viewCanvas.drawBitmap(pageBitmap, 0, 0, null);
+            fitImageRect(item.image.getIntrinsicWidth(), item.image.getIntrinsicHeight(), left, top, right, bottom);
         }
+        return true;
     }
 
-    private Paint paint3d = new Paint();
-    private void drawPageIn3D(Bitmap pageBitmap, Canvas canvas)
+    /*
+    * Sets imageRect to the biggest rect of given aspect ratio that is centered
+    * in given bounds; fills bounds if image has no size.
+    * */
+    private void fitImageRect(int imageWidth, int imageHeight, int left, int top, int right, int bottom)
     {
-        pageLeftBitmap.eraseColor(Color.TRANSPARENT);
-        pageMiddleBitmap.eraseColor(pageBackgroundColor);
-        pageRightBitmap.eraseColor(Color.TRANSPARENT);
+        int width = right - left;
+        int height = bottom - top;
+        if (imageWidth <= 0 || imageHeight <= 0)
+        {
+            imageRect.set(left, top, right, bottom);
+            return;
+        }
+
+        float scale = Math.min((float) width / imageWidth, (float) height / imageHeight);
+        int fittedWidth = Math.round(imageWidth * scale);
+        int fittedHeight = Math.round(imageHeight * scale);
 
-        paint3d.setShader(pageLeftGradient);
-        pageLeftCanvas.drawRect(sidesOfPageRect, paint3d);
-        pageLeftCanvas.drawBitmap(pageBitmap, sidesOfPageRect, sidesOfPageRect, paint3d);
+        int fittedLeft = left + (width - fittedWidth) / 2;
+        int fittedTop = top + (height - fittedHeight) / 2;
+        imageRect.set(fittedLeft, fittedTop, fittedLeft + fittedWidth, fittedTop + fittedHeight);
+    }
 
-//        paint3d.setShader(null);
-        pageMiddleCanvas.drawBitmap(pageBitmap, middleOfPageSrcRect, middleOfPageDstRect, null);
+    /*
+    * Starts loading images of items just outside the visible ones,
+    * so they are ready when scrolled in.
+    * */
+    private void requestNearbyImages(int firstVisible, int lastVisible)
+    {
+        imageLoader.setWindow(wheel, firstVisible - BOUND_ITEMS_MARGIN, lastVisible + BOUND_ITEMS_MARGIN);
 
-        paint3d.setShader(pageRightGradient);
-        pageRightCanvas.drawRect(sidesOfPageRect, paint3d);
-        pageRightCanvas.drawBitmap(pageBitmap, rightOfPageRect, sidesOfPageRect, paint3d);
+        int itemsSize = getItemCount();
+        for (int distance = 1; distance <= BOUND_ITEMS_MARGIN; distance++)
+        {
+            requestImage(wheel.toItemIndex(firstVisible - distance), itemsSize);
+            requestImage(wheel.toItemIndex(lastVisible + distance), itemsSize);
+        }
+    }
 
-        prepareMatrix(mMatrix, 0, -45);
+    private void requestImage(int position, int itemsSize)
+    {
+        if (position < 0 || position >= itemsSize) return;
 
+        Item item = getItemAt(position);
+        if (item.imageSource == null || imageLoader.get(item) != null) return;
 
-        mMatrix.preTranslate(-leftSideOfPage, -pageCenterY);
-        mMatrix.postTranslate(leftSideOfPage, pageCenterY);
+        int width = (isVertical) ? containerWidth : wheel.getSlice();
+        int height = (isVertical) ? wheel.getSlice() : containerHeight;
+        int padding = item.textPadding / 2;
+        imageLoader.request(item, width - padding * 2,
+                item.getImageHeight(height) - textBelowImagePadding);
+    }
 
-        mMatrix.postTranslate(0, 0);
+    private ItemImageLoader getImageLoader()
+    {
+        if (imageLoader == null)
+        {
+            imageLoader = new ItemImageLoader(imageCacheSize, new ItemImageLoader.Callback() {
+                @Override
+                public void onImageLoaded(Item item) {
+                    invalidate();
+                }
+            });
+        }
+        return imageLoader;
+    }
 
-        canvas.drawBitmap(pageLeftBitmap, mMatrix, null);
+    /*
+    * Lets given host draw this wheel (or makes it a standalone wheel again
+    * for null), while it is a child of its current parent. The wheel keeps
+    * handling touch, but borrows no offscreen bitmaps of its own; the host
+    * composites it, so direct compositing and low memory mode of the wheel
+    * are ignored, and so is its 3D effect unless the host uses it.
+    * */
+    void setHost(Host host)
+    {
+        this.host = host;
+        this.hostParent = (host != null) ? getParent() : null;
+        if (host != null) compositor.release();
+        invalidate();
+    }
 
-//        prepareMatrix(mMatrix, 0, 0);
-//
-//        mMatrix.preTranslate(-pageCenterX, -pageCenterY);
-//        mMatrix.postTranslate(pageCenterX, pageCenterY);
-//
-//        mMatrix.postTranslate(leftSideOfPage, 0);
-//
-//        canvas.drawBitmap(pageMiddleBitmap, mMatrix, null);
-        canvas.drawBitmap(pageMiddleBitmap, null, middleOfPageSrcRect, null);
+    /*
+    * Draws items of a hosted wheel in its own page coordinates.
+    * It counts as a frame of its metrics, as onDraw of it draws nothing.
+    * */
+    void drawColumn(Canvas canvas)
+    {
+        drawnScrollPos = wheel.getScrollPos();
+        if (metrics == null)
+        {
+            drawPage(canvas);
+            return;
+        }
 
-        prepareMatrix(mMatrix, 0, 45);
+        FlywheelMetrics.beginSection("Flywheel.drawColumn");
+        long startTime = System.nanoTime();
+        metrics.beginFrame();
 
-        mMatrix.preTranslate(0, -pageCenterY);
-        mMatrix.postTranslate(0, pageCenterY);
+        drawPage(canvas);
 
-        mMatrix.postTranslate(rightSideOfPage, 0);
+        metrics.endFrame(System.nanoTime() - startTime);
+        FlywheelMetrics.endSection();
 
-        canvas.drawBitmap(pageRightBitmap, mMatrix, null);
+        if (onFrameMetricsListener != null) onFrameMetricsListener.onFrameMetrics(metrics);
     }
 
-    private void drawPageInVertical3D(Bitmap pageBitmap, Canvas canvas)
+    /*
+    * Copies what is drawn for items of (virtual) indices first to last of a
+    * hosted wheel, so that another thread can draw them. Items around them
+    * are kept bound and their images are loaded, like around visible items.
+    * */
+    ItemSnapshot[] snapshotItems(int first, int last)
     {
-        pageTopBitmap.eraseColor(Color.TRANSPARENT);
-        pageGirdleBitmap.eraseColor(pageBackgroundColor);
-        pageBottomBitmap.eraseColor(Color.TRANSPARENT);
-
-        paint3d.setShader(pageTopGradient);
-        pageTopCanvas.drawRect(vSidesOfPageRect, paint3d);
-        pageTopCanvas.drawBitmap(pageBitmap, vSidesOfPageRect, vSidesOfPageRect, paint3d);
+        if (adapter != null)
+            recycleBoundItems(first - BOUND_ITEMS_MARGIN, last + BOUND_ITEMS_MARGIN);
 
-//        paint3d.setShader(null);
-        pageGirdleCanvas.drawBitmap(pageBitmap, girdleOfPageSrcRect, girdleOfPageDstRect, null);
+        int itemsSize = getItemCount();
+        boolean isCyclic = wheel.isCyclic();
+        ItemSnapshot[] snapshots = new ItemSnapshot[Math.max(0, last - first + 1)];
 
-        paint3d.setShader(pageBottomGradient);
-        pageBottomCanvas.drawRect(vSidesOfPageRect, paint3d);
-        pageBottomCanvas.drawBitmap(pageBitmap, bottomOfPageRect, vSidesOfPageRect, paint3d);
+        for (int i=first; i <= last; i++)
+        {
+            int itemIndex = wheel.toItemIndex(i);
+            if (itemIndex < 0 || itemIndex >= itemsSize) continue;
 
+            Item item = getItemAt(itemIndex);
+            item.ensureTextChunks();
 
-        prepareMatrix(mMatrix, -45, 0);
+            Bitmap bitmap = null;
+            Drawable image = null;
+            if (item.hasImage() && fitItemImage(item, item.rect))
+            {
+                if (item.imageSource != null)
+                    bitmap = imageLoader.get(item);
+                else
+                    image = item.image;
+            }
 
-        mMatrix.preTranslate(-pageCenterX, -topSideOfPage);
-        mMatrix.postTranslate(pageCenterX, topSideOfPage);
+            boolean isLast = (itemIndex == itemsSize - 1 && !isCyclic);
+            snapshots[i - first] = new ItemSnapshot(item, isLast, bitmap, image, imageRect);
+        }
 
-        mMatrix.postTranslate(0, 0);
+        if (imageLoader != null) requestNearbyImages(first, last);
+        return snapshots;
+    }
 
-        canvas.drawBitmap(pageTopBitmap, mMatrix, null);
+    /*
+    * Distance left to the end of running animation, or 0.
+    * */
+    int getRemainingScroll()
+    {
+        if (scroller.isFinished()) return 0;
+        return (isVertical)
+                ? scroller.getFinalY() - scroller.getCurrY()
+                : scroller.getFinalX() - scroller.getCurrX();
+    }
 
-//        prepareMatrix(mMatrix, 0, 0);
-//
-//        mMatrix.preTranslate(-pageCenterX, -pageCenterY);
-//        mMatrix.postTranslate(pageCenterX, pageCenterY);
-//
-//        mMatrix.postTranslate(leftSideOfPage, 0);
-//
-//        canvas.drawBitmap(pageMiddleBitmap, mMatrix, null);
-        canvas.drawBitmap(pageGirdleBitmap, null, girdleOfPageSrcRect, null);
+    /*
+    * A host has taken current scroll position over, so it is not reported again.
+    * */
+    void onScrollPosDrawn()
+    {
+        drawnScrollPos = wheel.getScrollPos();
+    }
 
-        prepareMatrix(mMatrix, 45, 0);
+    Wheel getWheel()
+    {
+        return wheel;
+    }
 
-        mMatrix.preTranslate(-pageCenterX, 0);
-        mMatrix.postTranslate(pageCenterX, 0);
+    boolean isAnimating()
+    {
+        return !scroller.isFinished();
+    }
 
-        mMatrix.postTranslate(0, bottomSideOfPage);
+    int getPageBackgroundColor()
+    {
+        return compositor.getBackgroundColor();
+    }
 
-        canvas.drawBitmap(pageBottomBitmap, mMatrix, null);
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        // a hosted wheel is only drawn when its host is
+        if (isHosted()) host.onWheelInvalidated();
     }
 
-    private void prepareMatrix(final Matrix outMatrix, float angleX, float angleY)
+    // a wheel removed from its host's view is a standalone wheel again
+    private boolean isHosted()
     {
-        mCamera.save();
+        return host != null && getParent() == hostParent;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
 
-//        mCamera.translate(0, 0, 50);
-        mCamera.rotateX(angleX);
-        mCamera.rotateY(angleY);
+        // resume an animation interrupted by detaching
+        if (!scroller.isFinished()) frameScheduler.requestFrame();
+    }
 
-        mCamera.getMatrix(outMatrix);
-        mCamera.restore();
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        frameScheduler.cancel();
+        selectionDispatcher.cancel();
+        if (bulkTextLayout != null) bulkTextLayout.cancel();
+        // offscreen bitmaps are borrowed again on next draw
+        compositor.release();
     }
 
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         super.onLayout(changed, left, top, right, bottom);
 
-        initGfx();
+        if (getWidth() != containerWidth || getHeight() != containerHeight) initGfx();
     }
 
-    private ObjectAnimator objectAnimator;
-    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
     private void autoCenterItem()
     {
-        if ( objectAnimator != null && objectAnimator.isRunning() ) return;
-
-        Item itemAtCenter = null;
-        int rightOfScreen = scrollPos + containerWidth;
-        int bottomOfScreen = scrollPos + containerHeight;
-
-        for (Item item : items)
-        {
-            if (isVertical && (item.rect.bottom < scrollPos || item.rect.top > bottomOfScreen) )
-                continue;
-            if (!isVertical && (item.rect.right < scrollPos || item.rect.left > rightOfScreen) )
-                continue;
-
-            if ( (isVertical && item.rect.contains(0, scrollPos + pageCenterY) ) ||
-                (!isVertical && item.rect.contains(scrollPos + pageCenterX, 0)) )
-            {
-                itemAtCenter = item;
-                break;
-            }
-        }
+        // a fling or auto center is already running, which ends centered
+        if (!scroller.isFinished()) return;
 
-        if (itemAtCenter == null)
-        {
-            if ( (items.size() > 0) && (isVertical && scrollPos < items.get(0).rect.top ||
-                                       !isVertical && scrollPos < items.get(0).rect.left) )
-                autoCenterItem(0);
-            else
-                autoCenterItem(items.size() - 1);
-        }
+        if (getItemCount() < 1 || !wheel.isLaidOut()) return;
 
-        autoCenterItem(itemAtCenter);
+        autoCenterItem(wheel.getCenterIndex());
     }
 
     public void autoCenterItem(int position)
     {
-        if ( position < 0 || position >= items.size() ) return;
-        autoCenterItem(items.get(position));
+        if ( position < 0 || position >= getItemCount() ) return;
+        autoCenterItem(getItemAt(position));
     }
 
-    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
     public void autoCenterItem(Item itemAtCenter)
     {
         if (itemAtCenter == null) return;
 
-        int targetScrollPos;
+        // before layout, selected item is centered by layoutItems
+        if (wheel.isLaidOut())
+        {
+            scrollTo(wheel.scrollPosOfItem(itemAtCenter.index));
+            if (metrics != null) metrics.autoCenterCount++;
+            onItemCentered(itemAtCenter);
+        }else {
+            onItemCentered(itemAtCenter);
+            // there is nothing to animate
+            selectionDispatcher.selectionSettled(itemAtCenter.index);
+        }
+    }
+
+    /*
+    * Reports items that come into view on the way from current scroll position
+    * to given one: at most a page of them beyond visible ones, and none beyond
+    * those visible at the end. Reports only changes, unless forced.
+    * */
+    private void dispatchPrefetch(int finalScrollPos, boolean force)
+    {
+        if (onPrefetchListener == null) return;
 
-        if (isVertical)
+        int first = wheel.getFirstVisibleIndex();
+        int last = wheel.getLastVisibleIndex();
+        int pageCount = last - first + 1;
+        int landing = wheel.centerIndexAt(finalScrollPos);
+
+        int from, to;
+        boolean hasUpcoming;
+        if (finalScrollPos >= wheel.getScrollPos())
         {
-            targetScrollPos = itemAtCenter.rect.centerY() - (containerHeight / 2);
+            from = last + 1;
+            to = Math.min(last + pageCount, wheel.lastVisibleIndexAt(finalScrollPos));
+            hasUpcoming = from <= to;
         }else {
-            targetScrollPos = itemAtCenter.rect.centerX() - (containerWidth / 2);
+            from = first - 1;
+            to = Math.max(first - pageCount, wheel.firstVisibleIndexAt(finalScrollPos));
+            hasUpcoming = from >= to;
         }
+        // virtual indices of a cyclic wheel may be negative
+        if (!hasUpcoming) from = Integer.MIN_VALUE;
 
-        objectAnimator = ObjectAnimator.ofInt(this, "scrollPos", scrollPos, targetScrollPos);
-        objectAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                postInvalidate();
-            }
-        });
-        objectAnimator.setDuration(500);
-        objectAnimator.start();
+        if (!force && from == prefetchedFrom && landing == prefetchedLanding) return;
+        prefetchedFrom = from;
+        prefetchedLanding = landing;
 
-        this.selectedItem = itemAtCenter;
-        if (onAutoCenterListener != null) onAutoCenterListener.onAutoCenter(itemAtCenter);
+        if (hasUpcoming)
+            onPrefetchListener.onPrefetch(landing, wheel.toItemIndex(from), wheel.toItemIndex(to));
+        else
+            onPrefetchListener.onPrefetch(landing, -1, -1);
     }
 
-    public void addItem(String text)
+    /*
+    * Animates scroll position to given one.
+    * */
+    private void scrollTo(int targetScrollPos)
     {
-        addItem(text, null);
-    }
+        int scrollPos = wheel.getScrollPos();
 
-    public void addItem(String text, int textColor)
-    {
-        addItem(text, textColor, null);
+        scroller.forceFinished(true);
+        if (isVertical)
+            scroller.startScroll(0, scrollPos, 0, targetScrollPos - scrollPos, AUTO_CENTER_DURATION);
+        else
+            scroller.startScroll(scrollPos, 0, targetScrollPos - scrollPos, 0, AUTO_CENTER_DURATION);
+        isSettling = true;
+        frameScheduler.requestFrame();
+
+        if (isHosted()) host.onWheelAnimationStarted(scrollPos, 0, targetScrollPos, AUTO_CENTER_DURATION);
+        // what was reported belongs to the previous animation
+        dispatchPrefetch(targetScrollPos, true);
+    }
+
+    /*
+    * Selects given item, as soon as it is known that it will be at center.
+    * */
+    private void onItemCentered(Item itemAtCenter)
+    {
+        wheel.setSelectedIndex(itemAtCenter.index);
+        if (onAutoCenterListener != null) onAutoCenterListener.onAutoCenter(itemAtCenter);
+    }
+
+    public void addItem(String text)
+    {
+        addItem(text, null);
+    }
+
+    public void addItem(String text, int textColor)
+    {
+        addItem(text, textColor, null);
     }
 
     public void addItem(String text, Drawable image)
@@ -575,55 +879,230 @@ public class Flywheel extends View {
         addItem(text, this.defaultTextColor, image);
     }
 
+    /*
+    * Adds an item whose image is decoded in background when it is about to be shown.
+    * */
+    public void addItemWithImage(String text, ImageSource imageSource)
+    {
+        addItem(text);
+        items.get(items.size() - 1).imageSource = imageSource;
+    }
+
     public void addItem(String text, int textColor, Drawable image)
+    {
+        Item item = createItem(text, textColor, image);
+        item.index = items.size();
+
+        items.add(item);
+        if (textIndex != null) textIndex.add(text);
+        // first item gets selected
+        wheel.setItemCount(getItemCount());
+
+        // already laid out, so lay out the new item too
+        if (wheel.isLaidOut()) calculateItemRect(item);
+    }
+
+    public void addItems(Collection<String> texts)
+    {
+        items.ensureCapacity(items.size() + texts.size());
+        for (String text : texts)
+        {
+            addItem(text);
+        }
+        invalidate();
+    }
+
+    public void insertItem(int position, String text)
+    {
+        insertItem(position, text, this.defaultTextColor, null);
+    }
+
+    /*
+    * Inserts an item before given position. Only rects of following items are
+    * shifted and selected item (with current scroll offset) stays in place.
+    * */
+    public void insertItem(int position, String text, int textColor, Drawable image)
+    {
+        if ( position < 0 || position > items.size() ) return;
+
+        items.add(position, createItem(text, textColor, image));
+        wheel.insertItem(position);
+        if (textIndex != null) textIndex.insert(position, text);
+
+        onItemsMoved(position);
+    }
+
+    /*
+    * Removes item of given position. If it was selected, its next item
+    * (or previous one, if it was last) becomes selected.
+    * */
+    public void removeItem(int position)
+    {
+        if ( position < 0 || position >= items.size() ) return;
+
+        Item item = items.remove(position);
+        onItemChanged(item);
+        if (textIndex != null) textIndex.remove(position);
+        if (imageLoader != null) imageLoader.forget(item);
+
+        boolean isSelectionRemoved = wheel.removeItem(position);
+
+        onItemsMoved(position);
+
+        int selectedIndex = wheel.getSelectedIndex();
+        if (isSelectionRemoved && selectedIndex >= 0)
+        {
+            if (onAutoCenterListener != null) onAutoCenterListener.onAutoCenter(items.get(selectedIndex));
+            selectionDispatcher.selectionSettled(selectedIndex);
+        }
+    }
+
+    /*
+    * Changes text of item of given position, only that item is wrapped again.
+    * */
+    public void updateItem(int position, String text)
+    {
+        if ( position < 0 || position >= items.size() ) return;
+
+        items.get(position).setText(text);
+        invalidate();
+    }
+
+    private Item createItem(String text, int textColor, Drawable image)
     {
         Item item = new Item(this);
         item.text = text;
         item.textColor = textColor;
         item.image = image;
+        return item;
+    }
 
-        items.add(item);
+    /*
+    * Updates indexes and rects of items from given position on, after an insert
+    * or remove. Wheel has already scrolled so selected item keeps its offset from center.
+    * */
+    private void onItemsMoved(int from)
+    {
+        selectionDispatcher.forget();
 
-        // if it is first item then set to selected
-        if (items.size() == 1)
+        int itemsSize = items.size();
+        for (int i = from; i < itemsSize; i++)
         {
-            selectedItem = item;
+            Item item = items.get(i);
+            item.index = i;
+            if (wheel.isLaidOut()) calculateItemRect(item);
         }
+
+        if (wheel.isLaidOut())
+        {
+            // a running animation was aiming at old positions
+            boolean wasAnimating = !scroller.isFinished();
+            scroller.forceFinished(true);
+
+            if (wasAnimating) autoCenterItem();
+        }
+
+        invalidate();
     }
 
-    private int lastPos;
     private void calculateItemRect(Item item)
     {
-        int pageSlice = (isVertical) ? containerHeight / 3 : containerWidth / 3;
-
-        item.rect = new Rect();
+        int start = wheel.itemStart(item.index);
+        int end = start + wheel.getSlice();
 
         if (isVertical)
         {
-            item.rect.left = 0;
-            item.rect.right = containerWidth;
-            item.rect.top = lastPos;
-            item.rect.bottom = lastPos + pageSlice;
+            item.rect.set(0, start, containerWidth, end);
+        }else {
+            item.rect.set(start, 0, end, containerHeight);
+        }
+    }
+
+    private int getItemCount()
+    {
+        return (adapter != null) ? adapter.getCount() : items.size();
+    }
+
+    private Item getItemAt(int position)
+    {
+        if (adapter == null) return items.get(position);
+
+        Item item = boundItems.get(position);
+        if (item != null) return item;
 
-            lastPos = item.rect.bottom;
+        if (recycledItems.isEmpty())
+        {
+            item = new Item(this);
         }else {
-            item.rect.left = lastPos;
-            item.rect.right = lastPos + pageSlice;
-            item.rect.top = 0;
-            item.rect.bottom = containerHeight;
+            item = recycledItems.remove(recycledItems.size() - 1);
+            item.reset();
+            if (imageLoader != null) imageLoader.forget(item);
+        }
+
+        item.index = position;
+        calculateItemRect(item);
+        adapter.bindItem(item, position);
+        item.invalidateTextChunks();
+
+        boundItems.put(position, item);
+        return item;
+    }
 
-            lastPos = item.rect.right;
+    /*
+    * Moves bound items out of [first, last] positions (virtual ones for a
+    * cyclic wheel) to recycled items.
+    * */
+    private void recycleBoundItems(int first, int last)
+    {
+        for (int i = boundItems.size() - 1; i >= 0; i--)
+        {
+            int position = boundItems.keyAt(i);
+            if (wheel.isInWindow(position, first, last)) continue;
+
+            recycledItems.add(boundItems.valueAt(i));
+            boundItems.removeAt(i);
         }
+    }
+
+    public Adapter getAdapter() {
+        return adapter;
+    }
+
+    /*
+    * Sets an adapter to supply items on demand instead of items added by addItem.
+    * Only items around the visible ones are kept, others are reused, so an item
+    * returned by this view is only valid until it is scrolled away.
+    * */
+    public void setAdapter(Adapter adapter)
+    {
+        this.adapter = adapter;
+        recycleBoundItems(0, -1);
+
+        wheel.reset(getItemCount());
+        selectionDispatcher.forget();
+        invalidate();
+    }
+
+    /*
+    * Call when data of adapter has changed.
+    * */
+    public void notifyDataSetChanged()
+    {
+        recycleBoundItems(0, -1);
 
-        maxPositionValue = lastPos - (pageSlice * 2);
+        wheel.setItemCount(getItemCount());
+        selectionDispatcher.forget();
+        invalidate();
     }
 
     public Item getSelectedItem() {
-        return selectedItem;
+        int selectedIndex = wheel.getSelectedIndex();
+        if (selectedIndex < 0 || selectedIndex >= getItemCount()) return null;
+        return getItemAt(selectedIndex);
     }
 
     public int getSelectedItemIndex() {
-        return items.indexOf(selectedItem);
+        return wheel.getSelectedIndex();
     }
 
     public void setSelectedItem(Item selectedItem) {
@@ -636,14 +1115,61 @@ public class Flywheel extends View {
 
     public void setSelectedItemByText(String itemText)
     {
-        for (Item item : items)
+        int position = getTextIndex().indexOf(itemText);
+        if (position >= 0) autoCenterItem(position);
+    }
+
+    /*
+    * Selects the alphabetically first item whose text starts with given
+    * prefix, ignoring case. Returns false if there is no such item.
+    * Only items added by addItem are searched, not those of an adapter.
+    * */
+    public boolean seekItemByPrefix(String prefix)
+    {
+        int position = getTextIndex().indexOfPrefix(prefix);
+        if (position < 0) return false;
+
+        autoCenterItem(position);
+        return true;
+    }
+
+    /*
+    * Typed characters seek the item that starts with them (type-to-seek);
+    * a pause longer than a second starts a new prefix. Keys only reach a
+    * focused view, so make the wheel focusable (android:focusable) to use it.
+    * */
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent event) {
+        int unicodeChar = event.getUnicodeChar();
+        if (unicodeChar == 0 || Character.isISOControl(unicodeChar))
+            return super.onKeyDown(keyCode, event);
+
+        if (event.getEventTime() - lastTypedTime > TYPE_TO_SEEK_TIMEOUT) typedPrefix.setLength(0);
+        lastTypedTime = event.getEventTime();
+
+        typedPrefix.append((char) unicodeChar);
+        seekItemByPrefix(typedPrefix.toString());
+        return true;
+    }
+
+    private TextIndex getTextIndex()
+    {
+        if (textIndex == null)
         {
-            if (item.getText().equals(itemText))
+            textIndex = new TextIndex();
+            for (Item item : items)
             {
-                autoCenterItem(item);
-                return;
+                textIndex.add(item.text);
             }
         }
+        return textIndex;
+    }
+
+    void onItemTextChanged(Item item)
+    {
+        // items of an adapter are not indexed
+        if (textIndex == null || item.index < 0 || item.index >= items.size() || items.get(item.index) != item) return;
+        textIndex.set(item.index, item.text);
     }
 
     public int getDefaultTextColor() {
@@ -665,13 +1191,62 @@ public class Flywheel extends View {
         }
     }
 
+    /*
+    * Enables caching of rendered item text in bitmaps, limited to given budget
+    * (in bytes). Pass 0 to disable it (default).
+    * */
+    public void setItemTileCacheSize(int maxBytes)
+    {
+        if (itemTileCache != null) itemTileCache.evictAll();
+        itemTileCache = (maxBytes > 0) ? new ItemTileCache(maxBytes) : null;
+        invalidate();
+    }
+
+    public int getItemTileCacheSize()
+    {
+        return (itemTileCache != null) ? itemTileCache.maxSize() : 0;
+    }
+
+    /*
+    * Sets budget (in bytes) of decoded images of items that have an image source.
+    * It should hold images of visible items and two more on each side; those
+    * that do not fit are not decoded again until they are scrolled away.
+    * */
+    public void setImageCacheSize(int maxBytes)
+    {
+        this.imageCacheSize = maxBytes;
+        if (imageLoader != null)
+        {
+            imageLoader.clear();
+            imageLoader = null;
+        }
+        invalidate();
+    }
+
+    public int getImageCacheSize()
+    {
+        return imageCacheSize;
+    }
+
+    void onItemImageChanged(Item item)
+    {
+        if (imageLoader != null) imageLoader.forget(item);
+        invalidate();
+    }
+
+    void onItemChanged(Item item)
+    {
+        if (itemTileCache != null) itemTileCache.remove(item);
+    }
+
     public int getItemsSize()
     {
-        return items.size();
+        return getItemCount();
     }
 
     public void setScrollPos(int scrollPos) {
-        this.scrollPos = scrollPos;
+        wheel.setScrollPos(scrollPos);
+        frameScheduler.requestFrame();
     }
 
     public OnAutoCenterListener getOnAutoCenterListener() {
@@ -682,20 +1257,170 @@ public class Flywheel extends View {
         this.onAutoCenterListener = onAutoCenterListener;
     }
 
+    public OnPrefetchListener getOnPrefetchListener() {
+        return onPrefetchListener;
+    }
+
+    public void setOnPrefetchListener(OnPrefetchListener onPrefetchListener) {
+        this.onPrefetchListener = onPrefetchListener;
+    }
+
+    public OnSelectionChangeListener getOnSelectionChangeListener() {
+        return selectionDispatcher.getListener();
+    }
+
+    public void setOnSelectionChangeListener(OnSelectionChangeListener onSelectionChangeListener) {
+        setOnSelectionChangeListener(onSelectionChangeListener, null);
+    }
+
+    /*
+    * Listener is called on given executor (e.g. a background one for heavy work),
+    * or on UI thread if it is null.
+    * */
+    public void setOnSelectionChangeListener(OnSelectionChangeListener onSelectionChangeListener,
+                                             Executor executor) {
+        selectionDispatcher.setListener(onSelectionChangeListener, executor);
+    }
+
+    public int getCenterItemChangeInterval() {
+        return selectionDispatcher.getCenterInterval();
+    }
+
+    /*
+    * Minimum time between two onCenterItemChanged calls, in milliseconds.
+    * */
+    public void setCenterItemChangeInterval(int millis) {
+        selectionDispatcher.setCenterInterval(millis);
+    }
+
     public String getOrientation() {
         return (isVertical) ? "vertical" : "horizontal";
     }
 
+    /*
+    * Throws IllegalStateException for a column of a FlywheelPicker,
+    * which is always vertical.
+    * */
     public void setOrientation(String orientation) {
-        isVertical = (orientation.equals("vertical"));
+        boolean isVertical = (orientation.equals("vertical"));
+        if (this.isVertical == isVertical) return;
+        if (isHosted() && !host.canChangeOrientation())
+            throw new IllegalStateException("orientation of a hosted wheel is fixed by its host");
+
+        this.isVertical = isVertical;
+        wheel.setVertical(isVertical);
+        compositor.setVertical(isVertical);
+        // only geometry of items depends on orientation
+        if (wheel.isLaidOut())
+        {
+            layoutItems();
+            invalidate();
+        }
+    }
+
+    public boolean isCyclic() {
+        return wheel.isCyclic();
+    }
+
+    /*
+    * A cyclic wheel wraps around, so first item follows last one
+    * (e.g. for minutes), without repeating items.
+    * */
+    public void setCyclic(boolean cyclic) {
+        if (wheel.isCyclic() == cyclic) return;
+
+        scroller.forceFinished(true);
+        wheel.setCyclic(cyclic);
+        wheel.centerSelectedItem();
+        invalidate();
     }
 
     public boolean has3dEffect() {
         return page3dEffect;
     }
 
+    /*
+    * Ignored for a column of a FlywheelPicker, whose own 3D effect applies.
+    * */
     public void set3dEffect(boolean page3dEffect) {
         this.page3dEffect = page3dEffect;
+        invalidate();
+    }
+
+    public boolean hasDirectCompositing() {
+        return directCompositing;
+    }
+
+    /*
+    * When enabled, items are drawn straight into the view canvas (once per 3D band)
+    * instead of through the offscreen page and strip bitmaps.
+    * Ignored while the wheel is hosted (e.g. by a FlywheelPicker).
+    * */
+    public void setDirectCompositing(boolean directCompositing) {
+        this.directCompositing = directCompositing;
+        invalidate();
+    }
+
+    public boolean isLowMemoryMode() {
+        return lowMemoryMode;
+    }
+
+    /*
+    * In low memory mode the offscreen page is kept as an 8 bit mask instead of
+    * a 32 bit bitmap, and middle strip is 16 bit when background is opaque.
+    * Content is tinted with default text color, so colors of items (and of
+    * their images) are ignored.
+    * Ignored while the wheel is hosted (e.g. by a FlywheelPicker).
+    * */
+    public void setLowMemoryMode(boolean lowMemoryMode) {
+        this.lowMemoryMode = lowMemoryMode;
+        compositor.setLowMemoryMode(lowMemoryMode);
+        invalidate();
+    }
+
+    public boolean isMetricsEnabled() {
+        return metrics != null;
+    }
+
+    /*
+    * Starts or stops collecting frame timings and counters, and emitting
+    * trace sections (Android 4.3 and above). Disabling drops collected values.
+    * */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        if (metricsEnabled == (metrics != null)) return;
+        this.metrics = (metricsEnabled) ? new FlywheelMetrics() : null;
+    }
+
+    /*
+    * Returns collected metrics, or null when they are disabled.
+    * */
+    public FlywheelMetrics getMetrics() {
+        return metrics;
+    }
+
+    /*
+    * Listener is called after each drawn frame while metrics are enabled.
+    * */
+    public void setOnFrameMetricsListener(OnFrameMetricsListener onFrameMetricsListener) {
+        this.onFrameMetricsListener = onFrameMetricsListener;
+    }
+
+    public boolean hasBackgroundTextLayout() {
+        return backgroundTextLayout;
+    }
+
+    /*
+    * When enabled, text of all items is wrapped on worker threads after each
+    * layout (visible items first), instead of only when they become visible.
+    * Has no effect with an adapter.
+    * */
+    public void setBackgroundTextLayout(boolean backgroundTextLayout) {
+        this.backgroundTextLayout = backgroundTextLayout;
+
+        if (backgroundTextLayout)
+            startBulkTextLayout();
+        else if (bulkTextLayout != null)
+            bulkTextLayout.cancel();
     }
 
     public int getBackgroundColor()
@@ -756,7 +1481,7 @@ public class Flywheel extends View {
 
     @Override
     public void setBackgroundColor(int color) {
-        this.pageBackgroundColor = color;
+        compositor.setBackgroundColor(color);
     }
 
     @Override
@@ -781,58 +1506,262 @@ public class Flywheel extends View {
             return true;
         }
 
-        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
         @Override
         public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY)
         {
+            if (getItemCount() < 1 || !wheel.isLaidOut()) return false;
+
+            int scrollPos = wheel.getScrollPos();
+            int velocity = (int) -((isVertical) ? velocityY : velocityX);
+
+            // fling freely just to find out where it would end
             if (isVertical)
             {
                 scroller.fling(0, scrollPos,
-                        0, (int)-velocityY,
+                        0, velocity,
                         0, 0,
-                        -containerHeight * 5, maxPositionValue + (containerHeight * 5) );
+                        Integer.MIN_VALUE, Integer.MAX_VALUE);
             }else {
                 scroller.fling(scrollPos, 0,
-                        (int)-velocityX, 0,
-                        -containerWidth * 5, maxPositionValue + (containerWidth * 5),
+                        velocity, 0,
+                        Integer.MIN_VALUE, Integer.MAX_VALUE,
                         0, 0);
             }
-            scrollAnimator.setDuration(scroller.getDuration());
-            scrollAnimator.start();
+            int finalScrollPos = (isVertical) ? scroller.getFinalY() : scroller.getFinalX();
+
+            // land on center of the item nearest to that, in bounds of the list
+            int targetIndex = wheel.centerIndexAt(finalScrollPos);
+            int targetScrollPos = wheel.snapTargetOf(finalScrollPos);
+
+            if (!wheel.isInBounds(finalScrollPos))
+            {
+                // rest of a fling beyond the ends would only crawl toward the edge item
+                scrollTo(targetScrollPos);
+            }else {
+                if (isVertical)
+                    scroller.setFinalY(targetScrollPos);
+                else
+                    scroller.setFinalX(targetScrollPos);
+                isSettling = true;
+                frameScheduler.requestFrame();
+
+                if (isHosted()) host.onWheelAnimationStarted(scrollPos, velocity, targetScrollPos, 0);
+                dispatchPrefetch(targetScrollPos, true);
+            }
+            if (metrics != null) metrics.flingCount++;
+
+            onItemCentered(getItemAt(targetIndex));
 
             return true;
         }
 
-        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
         @Override
         public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY)
         {
-            if (isVertical && scrollPos + distanceY >= 0 && scrollPos + distanceY <= maxPositionValue)
+            scroller.forceFinished(true);
+            // selection settles again when finger is lifted
+            isSettling = false;
+
+            // scrolling is ignored beyond bounds
+            if (wheel.scrollBy((int) ((isVertical) ? distanceY : distanceX)))
             {
-                scrollAnimator.cancel();
-                scrollPos += distanceY;
-                postInvalidate();
+                frameScheduler.requestFrame();
                 return true;
             }
-            else if (!isVertical && scrollPos + distanceX >= 0 && scrollPos + distanceX <= maxPositionValue)
-            {
-                scrollAnimator.cancel();
-                scrollPos += distanceX;
-                postInvalidate();
-                return true;
-            }else {
-                scrollAnimator.cancel();
+            return false;
+        }
+    }
 
-//                if ( scrollPos < 0 ) scrollPos = 0;
-//                if ( scrollPos > maxPositionValue ) scrollPos = maxPositionValue;
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.selectedIndex = wheel.getSelectedIndex();
+        state.isVertical = isVertical;
+        state.page3dEffect = page3dEffect;
+        state.isCyclic = wheel.isCyclic();
+
+        // a running animation is already heading to selected item
+        if (wheel.isLaidOut() && state.selectedIndex >= 0 && scroller.isFinished())
+        {
+            int scrollOffset = wheel.getScrollPos() - wheel.scrollPosOfItem(state.selectedIndex);
+            state.scrollFraction = (float) scrollOffset / wheel.getSlice();
+        }else {
+            state.scrollFraction = pendingScrollFraction;
+        }
+        return state;
+    }
 
-                return false;
+    /*
+    * Items are not saved, so they must be added again before state is restored
+    * (e.g. in onCreate). Scroll position is restored without animation, once
+    * the view is laid out.
+    * */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState))
+        {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+
+        setOrientation((savedState.isVertical) ? "vertical" : "horizontal");
+        set3dEffect(savedState.page3dEffect);
+        setCyclic(savedState.isCyclic);
+
+        if (savedState.selectedIndex >= 0 && savedState.selectedIndex < getItemCount())
+        {
+            scroller.forceFinished(true);
+            wheel.setSelectedIndex(savedState.selectedIndex);
+            pendingScrollFraction = savedState.scrollFraction;
+
+            if (wheel.isLaidOut())
+            {
+                wheel.centerSelectedItem();
+                applyPendingScrollFraction();
+                invalidate();
             }
         }
     }
 
+    private void applyPendingScrollFraction()
+    {
+        if (pendingScrollFraction == 0 || !wheel.isLaidOut()) return;
+
+        wheel.setScrollPos(wheel.getScrollPos() + Math.round(pendingScrollFraction * wheel.getSlice()));
+        pendingScrollFraction = 0;
+    }
+
+    /*
+    * Selection, its offset from center (as a fraction of an item, so it
+    * survives size changes), orientation and 3D and cyclic modes.
+    * */
+    static class SavedState extends BaseSavedState
+    {
+        private static final int FLAG_VERTICAL = 1;
+        private static final int FLAG_3D_EFFECT = 2;
+        private static final int FLAG_CYCLIC = 4;
+
+        int selectedIndex;
+        float scrollFraction;
+        boolean isVertical, page3dEffect, isCyclic;
+
+        SavedState(Parcelable superState)
+        {
+            super(superState);
+        }
+
+        private SavedState(Parcel in)
+        {
+            super(in);
+            selectedIndex = in.readInt();
+            scrollFraction = in.readFloat();
+
+            int flags = in.readInt();
+            isVertical = (flags & FLAG_VERTICAL) != 0;
+            page3dEffect = (flags & FLAG_3D_EFFECT) != 0;
+            isCyclic = (flags & FLAG_CYCLIC) != 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(selectedIndex);
+            out.writeFloat(scrollFraction);
+            out.writeInt( (isVertical ? FLAG_VERTICAL : 0)
+                    | (page3dEffect ? FLAG_3D_EFFECT : 0)
+                    | (isCyclic ? FLAG_CYCLIC : 0) );
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    /*
+    * View that draws a wheel instead of it (see FlywheelPicker and FlywheelTextureView).
+    * */
+    interface Host
+    {
+        /*
+        * Content (and maybe scroll position) of the wheel has changed.
+        * */
+        void onWheelInvalidated();
+
+        /*
+        * Only scroll position of the wheel has changed.
+        * */
+        void onWheelScrolled();
+
+        /*
+        * The wheel has started to animate from given scroll position toward
+        * target one, as a fling of given velocity, or (if velocity is 0) in
+        * given duration.
+        * */
+        void onWheelAnimationStarted(int scrollPos, int velocity, int targetScrollPos, int duration);
+
+        /*
+        * Whether the wheel may switch between vertical and horizontal.
+        * */
+        boolean canChangeOrientation();
+    }
+
+    public static interface Adapter
+    {
+        public int getCount();
+
+        /*
+        * Fills given item (which may be a reused one) with data of given position.
+        * */
+        public void bindItem(Item item, int position);
+    }
+
     public static interface OnAutoCenterListener
     {
         public void onAutoCenter(Item itemAtCenter);
     }
+
+    /*
+    * Positions are passed instead of items, since items may have been recycled
+    * or changed by the time the listener runs on an executor.
+    * */
+    public static interface OnSelectionChangeListener
+    {
+        /*
+        * Item under center has changed while scrolling (throttled).
+        * */
+        public void onCenterItemChanged(int position);
+
+        /*
+        * Wheel has come to rest on a newly selected item.
+        * */
+        public void onSelectionSettled(int position);
+    }
+
+    public static interface OnPrefetchListener
+    {
+        /*
+        * Wheel is moving toward item of landingPosition (on a fling, and then
+        * whenever new items come into view). Items fromPosition to toPosition
+        * are about to become visible, fromPosition first, so it is greater than
+        * toPosition when moving backward; on a cyclic wheel the range may wrap
+        * around the ends. Both are -1 if no new item is coming.
+        * */
+        public void onPrefetch(int landingPosition, int fromPosition, int toPosition);
+    }
+
+    public static interface OnFrameMetricsListener
+    {
+        public void onFrameMetrics(FlywheelMetrics metrics);
+    }
 }
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/*
+* Timings and counters of a Flywheel, collected only while metrics are enabled.
+* "Last frame" values describe the most recent onDraw, others accumulate
+* until reset. The same instance is updated on every frame, so listeners
+* should copy the values they need instead of keeping it.
+* */
+public final class FlywheelMetrics
+{
+    private static final long DEFAULT_FRAME_BUDGET_NANOS = 16666667;
+
+    private long frameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+
+    long lastFrameNanos;
+    long lastItemsNanos;
+    // written by render thread of a FlywheelTextureView
+    volatile long lastCompositingNanos = -1;
+    int lastItemsDrawn;
+
+    long frameCount;
+    long framesOverBudget;
+    long totalFrameNanos;
+
+    long flingCount;
+    long autoCenterCount;
+
+    long textWrapCount;
+    long textWrapNanos;
+
+    FlywheelMetrics() {}
+
+    void beginFrame()
+    {
+        lastItemsNanos = 0;
+        lastCompositingNanos = -1;
+        lastItemsDrawn = 0;
+    }
+
+    void endFrame(long frameNanos)
+    {
+        lastFrameNanos = frameNanos;
+        totalFrameNanos += frameNanos;
+        frameCount++;
+        if (frameNanos > frameBudgetNanos) framesOverBudget++;
+    }
+
+    /*
+    * Duration of last onDraw, or of drawing its column in a picker.
+    * */
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    /*
+    * Part of last onDraw spent on drawing items.
+    * */
+    public long getLastItemsNanos() {
+        return lastItemsNanos;
+    }
+
+    /*
+    * Part of last onDraw spent on 3D compositing (or copying) the offscreen
+    * page to view, or -1 if it was not measured: with direct compositing
+    * items are drawn in the middle of it, so it can not be told apart.
+    * For a wheel of a FlywheelTextureView it is that of the last frame of
+    * its render thread.
+    * */
+    public long getLastCompositingNanos() {
+        return lastCompositingNanos;
+    }
+
+    /*
+    * Items drawn in last frame; with direct compositing an item is counted
+    * once for each band it is drawn in.
+    * */
+    public int getLastItemsDrawn() {
+        return lastItemsDrawn;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getFramesOverBudget() {
+        return framesOverBudget;
+    }
+
+    public long getAverageFrameNanos() {
+        return (frameCount > 0) ? totalFrameNanos / frameCount : 0;
+    }
+
+    public long getFrameBudgetNanos() {
+        return frameBudgetNanos;
+    }
+
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+    }
+
+    public long getFlingCount() {
+        return flingCount;
+    }
+
+    public long getAutoCenterCount() {
+        return autoCenterCount;
+    }
+
+    /*
+    * Number of texts wrapped on UI thread.
+    * */
+    public long getTextWrapCount() {
+        return textWrapCount;
+    }
+
+    public long getTextWrapNanos() {
+        return textWrapNanos;
+    }
+
+    public void reset()
+    {
+        lastFrameNanos = lastItemsNanos = 0;
+        lastCompositingNanos = -1;
+        lastItemsDrawn = 0;
+        frameCount = framesOverBudget = totalFrameNanos = 0;
+        flingCount = autoCenterCount = 0;
+        textWrapCount = textWrapNanos = 0;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    static void beginSection(String sectionName)
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+            Trace.beginSection(sectionName);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    static void endSection()
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+            Trace.endSection();
+    }
+}
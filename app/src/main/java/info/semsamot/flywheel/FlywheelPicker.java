@@ -0,0 +1,184 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+/*
+* Side by side vertical wheels (e.g. day, month and year) that look like a
+* single drum. Columns are laid out and handle touch as usual children, but
+* instead of compositing themselves they draw their items into one shared
+* offscreen page, which is projected in 3D bands once per frame.
+* So offscreen memory depends only on size of the picker, not on number of
+* its columns. Children must be Flywheels.
+* Columns are always vertical (changing orientation of one throws), and the
+* picker composites them: its 3D effect and background apply, while 3D effect,
+* direct compositing and low memory mode of columns are ignored.
+* */
+public class FlywheelPicker extends LinearLayout
+{
+    private final PageCompositor compositor = new PageCompositor();
+    private boolean page3dEffect = true;
+
+    private final Flywheel.Host columnHost = new Flywheel.Host() {
+        @Override
+        public void onWheelInvalidated() {
+            invalidate();
+        }
+
+        @Override
+        public void onWheelScrolled() {
+            invalidate();
+        }
+
+        @Override
+        public void onWheelAnimationStarted(int scrollPos, int velocity, int targetScrollPos, int duration) {
+            // columns are drawn at their current scroll position
+        }
+
+        @Override
+        public boolean canChangeOrientation() {
+            // page of picker is projected vertically
+            return false;
+        }
+    };
+
+    public FlywheelPicker(Context context) {
+        this(context, null);
+    }
+
+    public FlywheelPicker(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public FlywheelPicker(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        setOrientation(HORIZONTAL);
+
+        // background is drawn by compositor, like in a single Flywheel
+        Drawable background = getBackground();
+        if (background instanceof ColorDrawable)
+            compositor.setBackgroundColor(((ColorDrawable) background).getColor());
+        setBackgroundResource(0);
+    }
+
+    /*
+    * Appends a column that shares width of the picker with other columns.
+    * */
+    public Flywheel addColumn()
+    {
+        Flywheel column = new Flywheel(getContext());
+        addView(column, new LayoutParams(0, ViewGroup.LayoutParams.MATCH_PARENT, 1));
+        return column;
+    }
+
+    public Flywheel getColumn(int index)
+    {
+        return (Flywheel) getChildAt(index);
+    }
+
+    public int getColumnCount()
+    {
+        return getChildCount();
+    }
+
+    @Override
+    public void addView(View child, int index, ViewGroup.LayoutParams params) {
+        if (!(child instanceof Flywheel))
+            throw new IllegalArgumentException("children of FlywheelPicker must be Flywheels");
+
+        Flywheel column = (Flywheel) child;
+        // page of picker is projected vertically
+        column.setOrientation("vertical");
+
+        super.addView(child, index, params);
+        column.setHost(columnHost);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+
+        if (w > 0 && h > 0) compositor.setSize(w, h);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        // offscreen bitmaps are borrowed again on next draw
+        compositor.release();
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (!compositor.isLaidOut()) return;
+
+        if (!page3dEffect)
+        {
+            drawColumns(canvas);
+            return;
+        }
+
+        drawColumns(compositor.beginPage());
+        // page is never a mask, so it needs no tint
+        compositor.drawPageIn3D(canvas, Color.BLACK);
+    }
+
+    /*
+    * Draws page of each column at its place in page of the picker.
+    * */
+    private void drawColumns(Canvas canvas)
+    {
+        int childCount = getChildCount();
+        for (int i=0; i < childCount; i++)
+        {
+            View child = getChildAt(i);
+            if (child.getVisibility() != VISIBLE) continue;
+
+            int saveCount = canvas.save();
+            canvas.clipRect(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
+            canvas.translate(child.getLeft(), child.getTop());
+            ((Flywheel) child).drawColumn(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    public boolean has3dEffect() {
+        return page3dEffect;
+    }
+
+    public void set3dEffect(boolean page3dEffect) {
+        this.page3dEffect = page3dEffect;
+        invalidate();
+    }
+
+    @Override
+    public void setBackgroundColor(int color) {
+        compositor.setBackgroundColor(color);
+        invalidate();
+    }
+}
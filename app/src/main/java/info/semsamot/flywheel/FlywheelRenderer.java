@@ -0,0 +1,399 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.widget.Scroller;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import info.semsamot.flywheel.core.Wheel;
+import info.semsamot.flywheel.core.WheelGeometry;
+
+/*
+* Draws and composites a wheel on its own thread, onto surface of a TextureView.
+* UI thread hands two things over to it, without locking:
+* - Scenes: immutable snapshots of the items of a range, with the geometry
+*   of the wheel. A scene covers a whole fling or auto center (up to a budget
+*   of items), so the render thread draws every frame of it by itself.
+* - Motions: a scroll position, a fling or an auto center. Only the latest one
+*   counts, and it is replayed by a Scroller of render thread.
+* So the wheel keeps animating (and projecting in 3D) while UI thread is busy.
+* A new render thread is started for each surface.
+* */
+@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+class FlywheelRenderer
+{
+    /*
+    * Items of (virtual) indices firstIndex on, and what they are drawn with.
+    * */
+    static class Scene
+    {
+        boolean isVertical;
+        int pageWidth, pageHeight;
+        int itemCount;
+        boolean isCyclic;
+        int backgroundColor;
+        boolean has3dEffect;
+        // null unless metrics of the wheel are enabled
+        FlywheelMetrics metrics;
+
+        int firstIndex;
+        ItemSnapshot[] items;
+
+        int getLastIndex()
+        {
+            return firstIndex + items.length - 1;
+        }
+
+        /*
+        * Snapshot of item of given (virtual) index, or null if it is not in
+        * this scene. A cyclic wheel finds it in any round of its items.
+        * */
+        ItemSnapshot get(int index)
+        {
+            int i = index - firstIndex;
+            if (isCyclic && itemCount > 0) i = WheelGeometry.wrap(i, itemCount);
+            return (i >= 0 && i < items.length) ? items[i] : null;
+        }
+
+        /*
+        * Whether all items of (virtual) indices first to last are in this scene.
+        * */
+        boolean covers(int first, int last)
+        {
+            if (!isCyclic || itemCount < 1)
+                return Math.max(0, first) >= firstIndex && Math.min(itemCount - 1, last) <= getLastIndex();
+
+            if (items.length >= itemCount) return true;
+            int i = WheelGeometry.wrap(first - firstIndex, itemCount);
+            return i + (last - first) < items.length;
+        }
+    }
+
+    /*
+    * Jump to a scroll position (if velocity and duration are 0), or an
+    * animation from it toward target: a fling of given velocity, or an auto
+    * center of given duration.
+    * */
+    static class Motion
+    {
+        final int scrollPos;
+        final int velocity;
+        final int targetScrollPos;
+        final int duration;
+
+        Motion(int scrollPos, int velocity, int targetScrollPos, int duration)
+        {
+            this.scrollPos = scrollPos;
+            this.velocity = velocity;
+            this.targetScrollPos = targetScrollPos;
+            this.duration = duration;
+        }
+    }
+
+    private final Context context;
+
+    private final AtomicReference<Scene> sharedScene = new AtomicReference<Scene>();
+    private final AtomicReference<Motion> pendingMotion = new AtomicReference<Motion>();
+
+    // used on UI thread only
+    private RenderThread renderThread;
+
+    FlywheelRenderer(Context context)
+    {
+        this.context = context;
+    }
+
+    void setScene(Scene scene)
+    {
+        sharedScene.set(scene);
+    }
+
+    void setMotion(Motion motion)
+    {
+        pendingMotion.set(motion);
+    }
+
+    void requestRender()
+    {
+        if (renderThread != null) renderThread.requestRender();
+    }
+
+    boolean isRendering()
+    {
+        return renderThread != null;
+    }
+
+    /*
+    * Starts a render thread that draws into given surface, until stop.
+    * */
+    void start(SurfaceTexture surfaceTexture)
+    {
+        stop();
+        renderThread = new RenderThread(surfaceTexture);
+        renderThread.start();
+    }
+
+    /*
+    * Surface is released by render thread, once it has stopped drawing into it.
+    * */
+    void stop()
+    {
+        if (renderThread != null) renderThread.finish();
+        renderThread = null;
+    }
+
+    private class RenderThread extends HandlerThread
+    {
+        private static final int GRADIENT_CACHE_SIZE = 4;
+
+        private final SurfaceTexture surfaceTexture;
+        private Handler handler;
+        private final AtomicBoolean isRenderRequested = new AtomicBoolean();
+
+        // the rest is used on render thread only
+        private Surface surface;
+        private Scroller scroller;
+        private int scrollPos;
+        private boolean isFrameScheduled;
+        private Choreographer.FrameCallback frameCallback;
+
+        private Scene scene;
+        private final Wheel wheel = new Wheel();
+        private final PageCompositor compositor = new PageCompositor();
+        private final GradientCache gradientCache = new GradientCache(GRADIENT_CACHE_SIZE);
+        private final Paint paint = new Paint();
+        private final Paint imagePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final Rect imageRect = new Rect();
+
+        private final Runnable renderRunnable = new Runnable() {
+            @Override
+            public void run() {
+                isRenderRequested.set(false);
+                renderFrame();
+            }
+        };
+
+        private final Runnable frameRunnable = new Runnable() {
+            @Override
+            public void run() {
+                isFrameScheduled = false;
+                renderFrame();
+            }
+        };
+
+        RenderThread(SurfaceTexture surfaceTexture)
+        {
+            super("Flywheel render", Process.THREAD_PRIORITY_DISPLAY);
+            this.surfaceTexture = surfaceTexture;
+        }
+
+        @Override
+        public synchronized void start() {
+            super.start();
+
+            handler = new Handler(getLooper());
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    surface = new Surface(surfaceTexture);
+                    scroller = new Scroller(context, null, true);
+                }
+            });
+        }
+
+        void requestRender()
+        {
+            if (isRenderRequested.compareAndSet(false, true)) handler.post(renderRunnable);
+        }
+
+        void finish()
+        {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    surface.release();
+                    surface = null;
+                    surfaceTexture.release();
+                    compositor.release();
+                    quit();
+                }
+            });
+        }
+
+        private void renderFrame()
+        {
+            if (surface == null) return;
+
+            Motion motion = pendingMotion.getAndSet(null);
+            if (motion != null) applyMotion(motion);
+
+            Scene newScene = sharedScene.get();
+            if (newScene != scene) prepare(newScene);
+
+            boolean isAnimating = scroller.computeScrollOffset();
+            if (isAnimating) scrollPos = scroller.getCurrX();
+
+            if (scene != null && compositor.isLaidOut()) draw();
+
+            if (isAnimating) scheduleFrame();
+        }
+
+        /*
+        * Replays a motion on the single axis of scroller.
+        * */
+        private void applyMotion(Motion motion)
+        {
+            scroller.forceFinished(true);
+            scrollPos = motion.scrollPos;
+
+            if (motion.velocity != 0)
+            {
+                scroller.fling(motion.scrollPos, 0, motion.velocity, 0,
+                        Integer.MIN_VALUE, Integer.MAX_VALUE, 0, 0);
+                scroller.setFinalX(motion.targetScrollPos);
+            }else if (motion.duration > 0)
+            {
+                scroller.startScroll(motion.scrollPos, 0,
+                        motion.targetScrollPos - motion.scrollPos, 0, motion.duration);
+            }
+        }
+
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+        private void scheduleFrame()
+        {
+            if (isFrameScheduled) return;
+            isFrameScheduled = true;
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            {
+                if (frameCallback == null)
+                {
+                    frameCallback = new Choreographer.FrameCallback() {
+                        @Override
+                        public void doFrame(long frameTimeNanos) {
+                            frameRunnable.run();
+                        }
+                    };
+                }
+                // choreographer of render thread
+                Choreographer.getInstance().postFrameCallback(frameCallback);
+            }else {
+                handler.postDelayed(frameRunnable, ValueAnimator.getFrameDelay());
+            }
+        }
+
+        /*
+        * Takes geometry of the wheel over from given scene.
+        * */
+        private void prepare(Scene newScene)
+        {
+            scene = newScene;
+            if (scene == null) return;
+
+            if (wheel.isVertical() != scene.isVertical ||
+                    wheel.getWidth() != scene.pageWidth || wheel.getHeight() != scene.pageHeight)
+            {
+                wheel.setVertical(scene.isVertical);
+                wheel.setSize(scene.pageWidth, scene.pageHeight);
+
+                compositor.setVertical(scene.isVertical);
+                if (scene.pageWidth > 0 && scene.pageHeight > 0)
+                    compositor.setSize(scene.pageWidth, scene.pageHeight);
+                gradientCache.setGeometry(scene.isVertical, scene.pageWidth, scene.pageHeight);
+            }
+            wheel.setItemCount(scene.itemCount);
+            wheel.setCyclic(scene.isCyclic);
+
+            if (scene.backgroundColor != compositor.getBackgroundColor())
+                compositor.setBackgroundColor(scene.backgroundColor);
+        }
+
+        private void draw()
+        {
+            Canvas pageCanvas = compositor.beginPage();
+            drawItems(pageCanvas);
+
+            Canvas canvas;
+            try
+            {
+                canvas = surface.lockCanvas(null);
+            }catch (Surface.OutOfResourcesException e)
+            {
+                return;
+            }catch (IllegalArgumentException e)
+            {
+                return;
+            }
+
+            FlywheelMetrics metrics = scene.metrics;
+            long startTime = (metrics != null) ? System.nanoTime() : 0;
+
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            if (scene.has3dEffect)
+                compositor.drawPageIn3D(canvas, Color.BLACK);
+            else
+                compositor.drawPageFlat(canvas, Color.BLACK);
+
+            if (metrics != null) metrics.lastCompositingNanos = System.nanoTime() - startTime;
+
+            surface.unlockCanvasAndPost(canvas);
+        }
+
+        /*
+        * Draws visible items of the scene and page borders, as Flywheel does.
+        * */
+        private void drawItems(Canvas canvas)
+        {
+            boolean isVertical = scene.isVertical;
+            int slice = wheel.getSlice();
+            int first = wheel.firstVisibleIndexAt(scrollPos);
+            int last = wheel.lastVisibleIndexAt(scrollPos);
+
+            for (int i=first; i <= last; i++)
+            {
+                ItemSnapshot item = scene.get(i);
+                if (item == null) continue;
+
+                // an item of a cyclic wheel may be drawn rounds away from its place
+                int offset = (i - item.index) * slice - scrollPos;
+                item.draw(canvas, offset, isVertical, paint, gradientCache.get(item.textColor),
+                        imagePaint, imageRect);
+            }
+
+            paint.setShader(null);
+            paint.setColor(Color.BLACK);
+            PageCompositor.drawBorders(canvas, isVertical, scene.pageWidth, scene.pageHeight, paint);
+        }
+    }
+}
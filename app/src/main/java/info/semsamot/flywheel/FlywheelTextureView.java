@@ -0,0 +1,286 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.SurfaceTexture;
+import android.os.Build;
+import android.os.Parcelable;
+import android.util.AttributeSet;
+import android.view.TextureView;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import info.semsamot.flywheel.core.Wheel;
+
+/*
+* A Flywheel that is drawn and composited on a render thread of its own,
+* onto a TextureView, so that its animations stay smooth while UI thread is
+* busy (and drawing costs UI thread next to nothing).
+* The wheel itself (getFlywheel) still keeps items, handles touch and runs
+* its animations on UI thread, but instead of drawing itself it hands
+* snapshots of items over to render thread: those around it at rest, and
+* those along the whole way of a fling or auto center once it starts, which
+* render thread then replays by itself. Item tiles and direct compositing
+* are not used, and drawable images without a constant state are not drawn.
+* Needs API 14 and hardware acceleration, like any TextureView; without them
+* it is a plain Flywheel.
+* */
+@TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+public class FlywheelTextureView extends FrameLayout
+{
+    // budget of items in a scene; a longer fling is covered from its start
+    private static final int MAX_SCENE_ITEMS = 128;
+    // items beyond the page that must be in scene at rest, else it is replaced
+    private static final int SCENE_LOOKAHEAD = 1;
+
+    private final Flywheel flywheel;
+    // null when the wheel draws itself
+    private TextureView textureView;
+    private FlywheelRenderer renderer;
+
+    // last scene handed over, and whether content of the wheel has changed since
+    private FlywheelRenderer.Scene scene;
+    private boolean isContentChanged = true;
+    private int publishedScrollPos;
+    private boolean isScrollPosPublished;
+
+    private final FrameScheduler frameScheduler = new FrameScheduler(this, new FrameScheduler.Callback() {
+        @Override
+        public boolean onFrame() {
+            sync(false);
+            return false;
+        }
+    });
+
+    private final Flywheel.Host wheelHost = new Flywheel.Host() {
+        @Override
+        public void onWheelInvalidated() {
+            isContentChanged = true;
+            frameScheduler.requestFrame();
+        }
+
+        @Override
+        public void onWheelScrolled() {
+            frameScheduler.requestFrame();
+        }
+
+        @Override
+        public void onWheelAnimationStarted(int scrollPos, int velocity, int targetScrollPos, int duration) {
+            if (!renderer.isRendering()) return;
+
+            publishScene(flywheel.getWheel(), scrollPos, targetScrollPos);
+            renderer.setMotion(new FlywheelRenderer.Motion(scrollPos, velocity, targetScrollPos, duration));
+            renderer.requestRender();
+            // position it comes to rest at is published again
+            isScrollPosPublished = false;
+        }
+
+        @Override
+        public boolean canChangeOrientation() {
+            return true;
+        }
+    };
+
+    public FlywheelTextureView(Context context) {
+        this(context, null);
+    }
+
+    public FlywheelTextureView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public FlywheelTextureView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        flywheel = new Flywheel(context);
+
+        // tag (text color) and background are meant for the wheel, as on a Flywheel in xml
+        if (getTag() != null)
+            flywheel.setDefaultTextColor( Color.parseColor(getTag().toString()) );
+        flywheel.setBackgroundColor(flywheel.getBackgroundColor(getBackground()));
+        setBackgroundResource(0);
+
+        addView(flywheel, new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) return;
+
+        renderer = new FlywheelRenderer(context);
+        textureView = new TextureView(context);
+        textureView.setOpaque(false);
+        textureView.setSurfaceTextureListener(createSurfaceTextureListener());
+
+        // wheel is under the texture, which does not handle touch
+        addView(textureView, new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        flywheel.setHost(wheelHost);
+    }
+
+    /*
+    * Created only once API 14 is known to be there, as the listener type
+    * does not exist below it; each new render thread gets a complete state.
+    * */
+    private TextureView.SurfaceTextureListener createSurfaceTextureListener()
+    {
+        return new TextureView.SurfaceTextureListener() {
+            @Override
+            public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+                renderer.start(surface);
+                sync(true);
+            }
+
+            @Override
+            public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+                sync(true);
+            }
+
+            @Override
+            public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+                renderer.stop();
+                // released by render thread
+                return false;
+            }
+
+            @Override
+            public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+            }
+        };
+    }
+
+    public Flywheel getFlywheel()
+    {
+        return flywheel;
+    }
+
+    /*
+    * Hands current state of the wheel over to render thread: a new scene, if
+    * content has changed or the page nears an end of the scene, and its
+    * scroll position, if it is not animating (animations are handed over
+    * when they start).
+    * */
+    private void sync(boolean force)
+    {
+        Wheel wheel = flywheel.getWheel();
+        if (renderer == null || !renderer.isRendering() || !wheel.isLaidOut()) return;
+
+        int scrollPos = wheel.getScrollPos();
+        boolean isAnimating = flywheel.isAnimating();
+        boolean isChanged = false;
+
+        if (force || isContentChanged || scene == null ||
+                !scene.covers(wheel.getFirstVisibleIndex() - SCENE_LOOKAHEAD,
+                        wheel.getLastVisibleIndex() + SCENE_LOOKAHEAD))
+        {
+            // rest of a running animation is covered again
+            publishScene(wheel, scrollPos, scrollPos + flywheel.getRemainingScroll());
+            isChanged = true;
+        }
+
+        if (!isAnimating && (force || !isScrollPosPublished || scrollPos != publishedScrollPos))
+        {
+            renderer.setMotion(new FlywheelRenderer.Motion(scrollPos, 0, scrollPos, 0));
+            publishedScrollPos = scrollPos;
+            isScrollPosPublished = true;
+            isChanged = true;
+        }
+
+        flywheel.onScrollPosDrawn();
+        if (isChanged) renderer.requestRender();
+    }
+
+    /*
+    * Hands snapshots of items over to render thread, for the way from one
+    * scroll position to another and a page beyond both ends of it.
+    * */
+    private void publishScene(Wheel wheel, int fromScrollPos, int toScrollPos)
+    {
+        int length = wheel.getLength();
+        int first = wheel.firstVisibleIndexAt(Math.min(fromScrollPos, toScrollPos) - length);
+        int last = wheel.lastVisibleIndexAt(Math.max(fromScrollPos, toScrollPos) + length);
+
+        int maxItems = MAX_SCENE_ITEMS;
+        if (wheel.isCyclic()) maxItems = Math.min(maxItems, wheel.getItemCount());
+        if (last - first + 1 > maxItems)
+        {
+            // the way is covered from where it starts
+            if (toScrollPos >= fromScrollPos)
+                last = first + maxItems - 1;
+            else
+                first = last - maxItems + 1;
+        }
+
+        FlywheelRenderer.Scene scene = new FlywheelRenderer.Scene();
+        scene.isVertical = wheel.isVertical();
+        scene.pageWidth = wheel.getWidth();
+        scene.pageHeight = wheel.getHeight();
+        scene.itemCount = wheel.getItemCount();
+        scene.isCyclic = wheel.isCyclic();
+        scene.backgroundColor = flywheel.getPageBackgroundColor();
+        scene.has3dEffect = flywheel.has3dEffect();
+        scene.metrics = flywheel.getMetrics();
+        scene.firstIndex = first;
+        scene.items = flywheel.snapshotItems(first, last);
+
+        this.scene = scene;
+        isContentChanged = false;
+        renderer.setScene(scene);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        // TextureView draws nothing without hardware acceleration
+        if (textureView != null && !isHardwareAccelerated())
+        {
+            flywheel.setHost(null);
+            removeView(textureView);
+            textureView = null;
+            renderer = null;
+        }
+    }
+
+    // wheel has no id of its own, so its state is kept as state of this view
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        super.onSaveInstanceState();
+        return flywheel.onSaveInstanceState();
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof Flywheel.SavedState))
+        {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+
+        super.onRestoreInstanceState(((Flywheel.SavedState) state).getSuperState());
+        flywheel.onRestoreInstanceState(state);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        frameScheduler.cancel();
+        // snapshots hold bitmaps of items; a new scene is handed over with a new surface
+        scene = null;
+        if (renderer != null) renderer.setScene(null);
+    }
+
+}
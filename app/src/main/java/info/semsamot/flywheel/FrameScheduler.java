@@ -0,0 +1,79 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+
+/*
+* Coalesces frame requests of a view into at most one callback per vsync.
+* On Jelly Bean and above the callback is posted to the Choreographer
+* (through postOnAnimation), before that it is delayed by one animation frame.
+* Nothing is posted unless a frame is requested, so an idle view costs nothing.
+* */
+class FrameScheduler implements Runnable
+{
+    public static interface Callback
+    {
+        /*
+        * Called once per frame. Returns true if another frame is needed.
+        * */
+        public boolean onFrame();
+    }
+
+    private final View view;
+    private final Callback callback;
+    private boolean isScheduled;
+
+    public FrameScheduler(View view, Callback callback)
+    {
+        this.view = view;
+        this.callback = callback;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void requestFrame()
+    {
+        if (isScheduled) return;
+        isScheduled = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            view.postOnAnimation(this);
+        else
+            view.postDelayed(this, ValueAnimator.getFrameDelay());
+    }
+
+    public void cancel()
+    {
+        if (!isScheduled) return;
+        isScheduled = false;
+        view.removeCallbacks(this);
+    }
+
+    public boolean isScheduled()
+    {
+        return isScheduled;
+    }
+
+    @Override
+    public void run() {
+        isScheduled = false;
+        if (callback.onFrame()) requestFrame();
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Shader;
+
+import java.util.Arrays;
+
+/*
+* Small LRU cache for the fading text gradient of items.
+* A gradient depends on (color, orientation, width, height); the last three are
+* shared by all entries and changing them drops the whole cache.
+* Lookups are linear over a handful of slots, so they never allocate.
+* */
+class GradientCache
+{
+    private static final float[] POSITIONS = new float[]{0f, 0.3f, 0.7f, 1f};
+
+    private final int[] colors;
+    private final LinearGradient[] gradients;
+    private final long[] lastUsed;
+    private int size;
+    private long clock;
+
+    private boolean isVertical;
+    private int width, height;
+
+    public GradientCache(int capacity)
+    {
+        this.colors = new int[capacity];
+        this.gradients = new LinearGradient[capacity];
+        this.lastUsed = new long[capacity];
+    }
+
+    public void setGeometry(boolean isVertical, int width, int height)
+    {
+        if (this.isVertical == isVertical && this.width == width && this.height == height)
+            return;
+
+        this.isVertical = isVertical;
+        this.width = width;
+        this.height = height;
+        clear();
+    }
+
+    public LinearGradient get(int color)
+    {
+        for (int i=0; i < size; i++)
+        {
+            if (colors[i] == color)
+            {
+                lastUsed[i] = ++clock;
+                return gradients[i];
+            }
+        }
+
+        int slot;
+        if (size < gradients.length)
+        {
+            slot = size++;
+        }else {
+            // evict least recently used
+            slot = 0;
+            for (int i=1; i < size; i++)
+            {
+                if (lastUsed[i] < lastUsed[slot]) slot = i;
+            }
+        }
+
+        colors[slot] = color;
+        gradients[slot] = create(color);
+        lastUsed[slot] = ++clock;
+
+        return gradients[slot];
+    }
+
+    public void clear()
+    {
+        Arrays.fill(gradients, null);
+        size = 0;
+    }
+
+    private LinearGradient create(int color)
+    {
+        int[] stops = new int[]{Color.TRANSPARENT, color, color, Color.TRANSPARENT};
+
+        if (isVertical)
+        {
+            return new LinearGradient(
+                    0, 0, 0, height,
+                    stops, POSITIONS, Shader.TileMode.CLAMP);
+        }else {
+            return new LinearGradient(
+                    0, height / 2, width, 0,
+                    stops, POSITIONS, Shader.TileMode.CLAMP);
+        }
+    }
+}
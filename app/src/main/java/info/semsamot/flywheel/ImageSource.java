@@ -0,0 +1,150 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.content.ContentResolver;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+* An image of an item that is decoded only when the item gets near the
+* visible part of the wheel, off the UI thread and downsampled to the size it
+* is drawn at. Sources are compared with equals, so create one per image.
+* */
+public abstract class ImageSource
+{
+    /*
+    * Decodes the image with given options (it is called once with
+    * inJustDecodeBounds to read the size). Called on a worker thread.
+    * Returns null if it can not be decoded.
+    * */
+    public abstract Bitmap decode(BitmapFactory.Options options);
+
+    public static ImageSource fromResource(Resources resources, int resId)
+    {
+        return new ResourceSource(resources, resId);
+    }
+
+    public static ImageSource fromFile(String path)
+    {
+        return new FileSource(path);
+    }
+
+    public static ImageSource fromUri(ContentResolver resolver, Uri uri)
+    {
+        return new UriSource(resolver, uri);
+    }
+
+    private static class ResourceSource extends ImageSource
+    {
+        private final Resources resources;
+        private final int resId;
+
+        ResourceSource(Resources resources, int resId)
+        {
+            this.resources = resources;
+            this.resId = resId;
+        }
+
+        @Override
+        public Bitmap decode(BitmapFactory.Options options) {
+            return BitmapFactory.decodeResource(resources, resId, options);
+        }
+
+        // resources of another configuration (e.g. density) may decode another image
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ResourceSource && ((ResourceSource) o).resId == resId &&
+                    ((ResourceSource) o).resources == resources;
+        }
+
+        @Override
+        public int hashCode() {
+            return resId;
+        }
+    }
+
+    private static class FileSource extends ImageSource
+    {
+        private final String path;
+
+        FileSource(String path)
+        {
+            this.path = path;
+        }
+
+        @Override
+        public Bitmap decode(BitmapFactory.Options options) {
+            return BitmapFactory.decodeFile(path, options);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FileSource && ((FileSource) o).path.equals(path);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+    }
+
+    private static class UriSource extends ImageSource
+    {
+        private final ContentResolver resolver;
+        private final Uri uri;
+
+        UriSource(ContentResolver resolver, Uri uri)
+        {
+            this.resolver = resolver;
+            this.uri = uri;
+        }
+
+        @Override
+        public Bitmap decode(BitmapFactory.Options options) {
+            InputStream stream = null;
+            try
+            {
+                stream = resolver.openInputStream(uri);
+                return BitmapFactory.decodeStream(stream, null, options);
+            }catch (IOException e)
+            {
+                return null;
+            }finally {
+                if (stream != null)
+                {
+                    try { stream.close(); } catch (IOException ignored) {}
+                }
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof UriSource && ((UriSource) o).uri.equals(uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return uri.hashCode();
+        }
+    }
+}
@@ -18,23 +18,32 @@
 
 package info.semsamot.flywheel;
 
-import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.util.TypedValue;
 
 import java.util.ArrayList;
+import java.util.List;
+
+import info.semsamot.flywheel.core.TextChunk;
+import info.semsamot.flywheel.core.TextMeasurer;
+import info.semsamot.flywheel.core.TextWrapper;
 
 public class Item
 {
     private Flywheel flywheel;
+    int index;
     Rect rect;
 
     Drawable image;
-    Paint paint;
+    ImageSource imageSource;
 
     String text;
     ArrayList<TextChunk> textChunks;
+    private boolean isTextChunksValid;
+    private int wrapWidth, wrapHeight;
+    // changes whenever text chunks are invalidated; read by background text layout
+    volatile int textVersion;
     int textSize;
     int textColor;
     int textPadding;
@@ -43,69 +52,125 @@ public class Item
     public Item(Flywheel flywheel)
     {
         this.flywheel = flywheel;
+        this.rect = new Rect();
+        reset();
+    }
+
+    /*
+    * Restores defaults, so a recycled item can be bound again.
+    * */
+    void reset()
+    {
         this.textSize = (int) TypedValue.applyDimension(
                 TypedValue.COMPLEX_UNIT_DIP, 15, flywheel.getResources().getDisplayMetrics());
         this.text = "";
         this.textPadding = 30;
-        this.rect = new Rect();
-        this.paint = new Paint();
+        this.textColor = flywheel.getDefaultTextColor();
+        this.image = null;
+        this.imageSource = null;
+        this.isTextChunksValid = false;
+    }
+
+    /*
+    * Wraps text only if it (or its size, padding or rect size)
+    * has changed since last wrapping.
+    * */
+    void ensureTextChunks()
+    {
+        if (isTextChunksValid && wrapWidth == rect.width() && wrapHeight == rect.height()) return;
+        initTextChunks();
+    }
+
+    void invalidateTextChunks()
+    {
+        isTextChunksValid = false;
+        textVersion++;
+        flywheel.onItemChanged(this);
     }
 
     public void initTextChunks()
     {
-        textChunks = new ArrayList<TextChunk>();
-        paint.setTextSize(this.textSize);
-        Rect bounds = new Rect();
-        paint.getTextBounds(this.text, 0, this.text.length(), bounds);
-        lineSpacing = bounds.height() + 5;
-
-        int start = 0;
-        int breakAt;
-        int lastWord;
-        boolean mustTruncate = false;
-
-        //FIXME add support for line breaks ( \n )
-        do
+        if (textChunks == null)
+            textChunks = new ArrayList<TextChunk>();
+        else
+            textChunks.clear();
+
+        isTextChunksValid = true;
+        wrapWidth = rect.width();
+        wrapHeight = rect.height();
+
+        FlywheelMetrics metrics = flywheel.metrics;
+        long startTime = 0;
+        if (metrics != null)
         {
-            breakAt = start + paint.breakText(
-                    this.text, start, this.text.length(), true, this.rect.width() - textPadding, null);
+            FlywheelMetrics.beginSection("Flywheel.wrapText");
+            startTime = System.nanoTime();
+        }
 
-            // if breakAt is not at the end of text, put it at last word
-            if (breakAt != this.text.length())
-            {
-                lastWord = this.text.lastIndexOf(" ", breakAt);
-                if (lastWord != -1 && lastWord > start) breakAt = lastWord;
-            }
+        lineSpacing = wrapText(flywheel.textMeasurer, wrapWidth, wrapHeight, this.textChunks);
 
-            String slice = this.text.substring(start, breakAt);
+        if (metrics != null)
+        {
+            metrics.textWrapNanos += System.nanoTime() - startTime;
+            metrics.textWrapCount++;
+            FlywheelMetrics.endSection();
+        }
+    }
 
-            // if next line is out of rect bottom then truncate this line and finish.
-            if ( (this.textChunks.size()+2) * lineSpacing > this.rect.height() + textPadding )
-            {
-                mustTruncate = true;
-                if (slice.length() >= 3)
-                {
-                    slice = slice.substring(0, slice.length() - 3) + "...";
-                }
-            }
+    /*
+    * Publishes text chunks wrapped in background, unless item has changed since.
+    * */
+    void applyTextChunks(int version, int width, int height, ArrayList<TextChunk> textChunks, int lineSpacing)
+    {
+        if (version != textVersion || width != rect.width() || height != rect.height()) return;
+        // already wrapped on UI thread
+        if (isTextChunksValid && wrapWidth == width && wrapHeight == height) return;
 
-            this.textChunks.add(
-                    new TextChunk(slice, (this.textChunks.size()+1) * lineSpacing) );
+        this.textChunks = textChunks;
+        this.lineSpacing = lineSpacing;
+        isTextChunksValid = true;
+        wrapWidth = width;
+        wrapHeight = height;
+    }
 
-            start = breakAt;
+    /*
+    * Wraps text in a rect of given size, below the image if there is one.
+    * Only reads fields whose changes bump textVersion, so it can run on any thread.
+    * Returns line spacing.
+    * */
+    int wrapText(TextMeasurer measurer, int width, int height, List<TextChunk> textChunks)
+    {
+        int imageSpace = getImageSpace(height);
 
-            if (mustTruncate) break;
+        int lineSpacing = TextWrapper.wrap(measurer, this.text, this.textSize, this.textPadding,
+                width, height - imageSpace, textChunks);
 
-        }while (breakAt < this.text.length());
+        for (int i=0; i < textChunks.size(); i++)
+        {
+            textChunks.get(i).posY += imageSpace;
+        }
+        return lineSpacing;
+    }
 
+    boolean hasImage()
+    {
+        return image != null || imageSource != null;
+    }
 
-        int textChunksHeight = lineSpacing * textChunks.size();
-        int offset = (this.rect.height() - textChunksHeight) / 2;
+    /*
+    * Height of the image at top of a rect of given height, or 0 if there is no image.
+    * */
+    int getImageHeight(int height)
+    {
+        return (hasImage()) ? height / 2 : 0;
+    }
 
-        for (TextChunk textChunk : this.textChunks)
-        {
-            textChunk.posY += offset;
-        }
+    /*
+    * Height taken by the image and the padding below it.
+    * */
+    private int getImageSpace(int height)
+    {
+        return (hasImage()) ? getImageHeight(height) + flywheel.textBelowImagePadding : 0;
     }
 
     public String getText() {
@@ -114,35 +179,54 @@ public class Item
 
     public void setText(String text) {
         this.text = text;
-        initTextChunks();
+        invalidateTextChunks();
+        flywheel.onItemTextChanged(this);
+    }
+
+    public int getTextColor() {
+        return textColor;
+    }
+
+    public void setTextColor(int textColor) {
+        this.textColor = textColor;
+    }
+
+    public Drawable getImage() {
+        return image;
+    }
+
+    public void setImage(Drawable image) {
+        this.image = image;
+        // text moves below the image
+        invalidateTextChunks();
+    }
+
+    public ImageSource getImageSource() {
+        return imageSource;
+    }
+
+    /*
+    * Sets an image that is loaded asynchronously when the item is about
+    * to be shown. It is drawn instead of image set by setImage.
+    * */
+    public void setImageSource(ImageSource imageSource) {
+        this.imageSource = imageSource;
+        invalidateTextChunks();
+        flywheel.onItemImageChanged(this);
     }
 
     public void setTextSize(int textSize) {
         this.textSize = textSize;
-        initTextChunks();
-
+        invalidateTextChunks();
     }
 
     public void setTextPadding(int textPadding) {
         this.textPadding = textPadding;
-        initTextChunks();
-
+        invalidateTextChunks();
     }
 
     public void setLineSpacing(int lineSpacing) {
         this.lineSpacing = lineSpacing;
-        initTextChunks();
-    }
-
-    public class TextChunk
-    {
-        int posY;
-        String text;
-
-        public TextChunk(String text, int posY)
-        {
-            this.text = text;
-            this.posY = posY;
-        }
+        invalidateTextChunks();
     }
 }
@@ -0,0 +1,281 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+
+import info.semsamot.flywheel.core.Wheel;
+import info.semsamot.flywheel.core.WheelGeometry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+* Decodes images of items on worker threads, downsampled to the size they are
+* drawn at, and keeps them in an LRU cache with a byte budget.
+* An item is requested at most once for a source; a failed decode is not
+* retried until its source changes. An image evicted while its item is near
+* the visible ones is not requested again until the item leaves them, else
+* a budget smaller than those images would decode and evict them forever.
+* Decodes of items that have left the wanted window before they start are
+* skipped, so a long fling does not queue stale images before landing ones.
+* Must be used from the UI thread.
+* */
+class ItemImageLoader
+{
+    interface Callback
+    {
+        public void onImageLoaded(Item item);
+    }
+
+    private static final int WORKERS = 2;
+    private static ExecutorService executor;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Callback callback;
+    private final LruCache<Item, Bitmap> cache;
+    // sources requested for items, loaded or not
+    private final HashMap<Item, ImageSource> requested = new HashMap<Item, ImageSource>();
+    // items whose images were evicted, still counted as requested
+    private final ArrayList<Item> evicted = new ArrayList<Item>();
+    // bumped when all images are dropped, so that decodes started before are dropped too
+    private int generation;
+    // items whose images are wanted, read by workers before decoding; null for all
+    private volatile Window window;
+
+    ItemImageLoader(int maxBytes, Callback callback)
+    {
+        this.callback = callback;
+        this.cache = new LruCache<Item, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Item item, Bitmap bitmap) {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Item item, Bitmap oldValue, Bitmap newValue) {
+                if (evicted && !ItemImageLoader.this.evicted.contains(item))
+                    ItemImageLoader.this.evicted.add(item);
+            }
+        };
+    }
+
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "Flywheel image loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    public int maxSize()
+    {
+        return cache.maxSize();
+    }
+
+    /*
+    * Returns decoded image of given item, or null if it is not loaded yet.
+    * */
+    public Bitmap get(Item item)
+    {
+        return cache.get(item);
+    }
+
+    /*
+    * Starts decoding image of given item to fit in given size,
+    * unless it is already loaded or being loaded.
+    * */
+    public void request(Item item, int width, int height)
+    {
+        ImageSource source = item.imageSource;
+        if (source == null || width <= 0 || height <= 0) return;
+        if (source.equals(requested.get(item))) return;
+
+        requested.put(item, source);
+        getExecutor().execute(new Task(item, item.index, source, width, height, generation));
+    }
+
+    /*
+    * Sets (virtual) positions of wheel, first to last, whose images are wanted.
+    * Decodes of items out of them that have not started yet are skipped, and
+    * evicted images of those items may be requested again when they come back.
+    * */
+    public void setWindow(Wheel wheel, int first, int last)
+    {
+        window = new Window(first, last, wheel.getItemCount(), wheel.isCyclic());
+
+        for (int i = evicted.size() - 1; i >= 0; i--)
+        {
+            Item item = evicted.get(i);
+            if (wheel.isInWindow(item.index, first, last)) continue;
+
+            evicted.remove(i);
+            requested.remove(item);
+        }
+    }
+
+    /*
+    * Drops image of given item, e.g. when its source has changed.
+    * */
+    public void forget(Item item)
+    {
+        requested.remove(item);
+        cache.remove(item);
+        evicted.remove(item);
+    }
+
+    /*
+    * Drops all images, e.g. when size of items has changed.
+    * */
+    public void clear()
+    {
+        generation++;
+        cache.evictAll();
+        requested.clear();
+        evicted.clear();
+    }
+
+    /*
+    * Largest power of two that keeps the image at least as big as given size.
+    * */
+    static int sampleSizeOf(int imageWidth, int imageHeight, int width, int height)
+    {
+        int sampleSize = 1;
+        while (imageWidth / (sampleSize * 2) >= width && imageHeight / (sampleSize * 2) >= height)
+        {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private class Task implements Runnable
+    {
+        private final Item item;
+        // index of item when it was requested, as workers must not read item
+        private final int index;
+        private final ImageSource source;
+        private final int width, height;
+        private final int generation;
+
+        Task(Item item, int index, ImageSource source, int width, int height, int generation)
+        {
+            this.item = item;
+            this.index = index;
+            this.source = source;
+            this.width = width;
+            this.height = height;
+            this.generation = generation;
+        }
+
+        @Override
+        public void run() {
+            Window window = ItemImageLoader.this.window;
+            if (window != null && !window.contains(index))
+            {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // so that it is requested again if it comes back
+                        if (requested.get(item) == source) requested.remove(item);
+                    }
+                });
+                return;
+            }
+
+            final Bitmap bitmap = decode();
+
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // item may have been reused or forgotten in the meantime,
+                    // or requested again for another size
+                    if (bitmap == null || requested.get(item) != source ||
+                            generation != ItemImageLoader.this.generation) return;
+
+                    cache.put(item, bitmap);
+                    callback.onImageLoaded(item);
+                }
+            });
+        }
+
+        private Bitmap decode()
+        {
+            try
+            {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                source.decode(options);
+                if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+                options.inJustDecodeBounds = false;
+                options.inSampleSize = sampleSizeOf(options.outWidth, options.outHeight, width, height);
+                return source.decode(options);
+            }catch (OutOfMemoryError e)
+            {
+                return null;
+            }
+        }
+    }
+
+    /*
+    * Virtual positions first to last of a wheel, immutable so that it can be
+    * read by workers.
+    * */
+    private static class Window
+    {
+        private final int first, last;
+        private final int itemCount;
+        private final boolean isCyclic;
+
+        Window(int first, int last, int itemCount, boolean isCyclic)
+        {
+            this.first = first;
+            this.last = last;
+            this.itemCount = itemCount;
+            this.isCyclic = isCyclic;
+        }
+
+        // same as Wheel.isInWindow
+        boolean contains(int index)
+        {
+            if (!isCyclic || itemCount < 1) return index >= first && index <= last;
+            return WheelGeometry.wrap(index - first, itemCount) <= last - first;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+
+import java.util.List;
+
+import info.semsamot.flywheel.core.TextChunk;
+
+/*
+* What is drawn for an item, copied on UI thread so that it can be drawn on
+* another one (see FlywheelRenderer) while the item itself keeps changing.
+* Positions are those of the item when page starts at scroll position 0.
+* A drawable image gets an instance of its own, if it has a constant state;
+* otherwise it is not drawn.
+* */
+final class ItemSnapshot
+{
+    final int index;
+    final int textColor;
+    private final boolean isLast;
+    private final Rect rect;
+    private final int textSize;
+    private final String[] texts;
+    private final int[] textX, textY;
+
+    private final Bitmap bitmap;
+    private final Drawable image;
+    private final Rect imageRect;
+
+    /*
+    * Given image (a loaded bitmap or a drawable) fits in given imageRect;
+    * isLast is true for the last item of a wheel that is not cyclic.
+    * */
+    ItemSnapshot(Item item, boolean isLast, Bitmap bitmap, Drawable image, Rect imageRect)
+    {
+        this.index = item.index;
+        this.isLast = isLast;
+        this.rect = new Rect(item.rect);
+        this.textColor = item.textColor;
+        this.textSize = item.textSize;
+
+        List<TextChunk> textChunks = item.textChunks;
+        int textChunksSize = (textChunks != null) ? textChunks.size() : 0;
+        texts = new String[textChunksSize];
+        textX = new int[textChunksSize];
+        textY = new int[textChunksSize];
+        for (int i=0; i < textChunksSize; i++)
+        {
+            TextChunk textChunk = textChunks.get(i);
+            texts[i] = textChunk.text;
+            textX[i] = textChunk.posX;
+            textY[i] = textChunk.posY;
+        }
+
+        Drawable.ConstantState imageState = (image != null) ? image.getConstantState() : null;
+        this.bitmap = bitmap;
+        this.image = (imageState != null) ? imageState.newDrawable() : null;
+        this.imageRect = (bitmap != null || this.image != null) ? new Rect(imageRect) : null;
+    }
+
+    /*
+    * Draws the item like Flywheel does, moved by given offset along scrolling
+    * axis. Dividers and text are faded with given shader; tempRect is used
+    * for bounds of image.
+    * */
+    void draw(Canvas canvas, int offset, boolean isVertical, Paint paint, Shader fade,
+              Paint imagePaint, Rect tempRect)
+    {
+        int dx = (isVertical) ? 0 : offset;
+        int dy = (isVertical) ? offset : 0;
+        int left = rect.left + dx;
+        int top = rect.top + dy;
+        int right = rect.right + dx;
+        int bottom = rect.bottom + dy;
+
+        paint.setShader(fade);
+        paint.setStrokeWidth(3);
+
+        if (isVertical)
+        {
+            canvas.drawLine(left, top, right, top, paint);
+            if (isLast) canvas.drawLine(left, bottom, right, bottom, paint);
+        }else {
+            canvas.drawLine(left, top, left, bottom, paint);
+            if (isLast) canvas.drawLine(right, top, right, bottom, paint);
+        }
+
+        if (imageRect != null)
+        {
+            tempRect.set(imageRect);
+            tempRect.offset(dx, dy);
+            if (bitmap != null)
+            {
+                canvas.drawBitmap(bitmap, null, tempRect, imagePaint);
+            }else {
+                image.setBounds(tempRect);
+                image.draw(canvas);
+            }
+        }
+
+        // same placement of text as in Flywheel.drawItems
+        paint.setTextSize(textSize);
+        for (int i=0; i < texts.length; i++)
+        {
+            if (isVertical)
+                canvas.drawText(texts[i], left + textX[i], top + textY[i], paint);
+            else
+                canvas.drawText(texts[i], left + textX[i], textY[i], paint);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.LruCache;
+
+import info.semsamot.flywheel.core.TextChunk;
+
+/*
+* Keeps the text of items pre-rasterized into ALPHA_8 tiles of the item rect size.
+* A tile is only a coverage mask, so it is tinted by whatever paint (color or
+* fading gradient) it is drawn with, exactly like the text it replaces.
+* Evicted tiles are not recycled because they may still be referenced by the
+* frame that is being drawn.
+* */
+class ItemTileCache extends LruCache<Item, Bitmap>
+{
+    private final Paint paint = new Paint();
+    private final Canvas canvas = new Canvas();
+
+    public ItemTileCache(int maxBytes)
+    {
+        super(maxBytes);
+    }
+
+    @Override
+    protected int sizeOf(Item item, Bitmap tile) {
+        return tile.getByteCount();
+    }
+
+    /*
+    * Returns the tile of given item, rendering it if it is missing or
+    * its size no longer matches the item rect. Returns null if the item
+    * has nothing to draw or its tile would not fit in the budget.
+    * */
+    public Bitmap getTile(Item item)
+    {
+        int width = item.rect.width();
+        int height = item.rect.height();
+
+        Bitmap tile = get(item);
+        if (tile != null && tile.getWidth() == width && tile.getHeight() == height)
+            return tile;
+
+        if (width <= 0 || height <= 0 || item.textChunks == null || item.textChunks.isEmpty())
+            return null;
+
+        // ALPHA_8 takes one byte per pixel
+        if (width * height > maxSize()) return null;
+
+        tile = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        canvas.setBitmap(tile);
+
+        paint.setTextSize(item.textSize);
+        for (TextChunk textChunk : item.textChunks)
+        {
+            canvas.drawText(textChunk.text, textChunk.posX, textChunk.posY, paint);
+        }
+
+        put(item, tile);
+        return tile;
+    }
+}
@@ -0,0 +1,490 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.graphics.Bitmap;
+import android.graphics.Camera;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+
+/*
+* Offscreen page of a wheel and its projection in 3D bands: the page is cut
+* into two sides, rotated by 45 degrees and faded into background, and a flat
+* middle. Offscreen bitmaps are borrowed from BitmapPool on first use.
+* Used by Flywheel for its own page, by FlywheelPicker, which projects
+* the page of all its columns at once, and by render thread of FlywheelTextureView.
+* */
+class PageCompositor
+{
+    /*
+    * Draws content of page in page coordinates.
+    * */
+    interface PageRenderer
+    {
+        void drawPage(Canvas canvas);
+    }
+
+    private boolean isVertical = true;
+    private boolean lowMemoryMode = false;
+    private int backgroundColor = Color.WHITE;
+
+    private int width, height;
+    private int pageCenterX, pageCenterY;
+
+    private final Matrix mMatrix = new Matrix();
+    private final Camera mCamera = new Camera();
+
+    private LinearGradient pageTopGradient, pageBottomGradient;
+    private LinearGradient pageLeftGradient, pageRightGradient;
+
+    private Bitmap pageBitmap;
+    private Canvas pageCanvas;
+
+    private Bitmap pageTopBitmap, pageGirdleBitmap, pageBottomBitmap;
+    private Bitmap pageLeftBitmap, pageMiddleBitmap, pageRightBitmap;
+
+    private Canvas pageTopCanvas, pageGirdleCanvas, pageBottomCanvas;
+    private Canvas pageLeftCanvas, pageMiddleCanvas, pageRightCanvas;
+
+    private final Rect vSidesOfPageRect = new Rect(), bottomOfPageRect = new Rect();
+    private final Rect sidesOfPageRect = new Rect(), rightOfPageRect = new Rect();
+    private final Rect girdleOfPageSrcRect = new Rect(), girdleOfPageDstRect = new Rect();
+    private final Rect middleOfPageSrcRect = new Rect(), middleOfPageDstRect = new Rect();
+
+    private int topSideOfPage, bottomSideOfPage;
+    private int leftSideOfPage, rightSideOfPage;
+
+    private boolean arePageBitmapsValid;
+
+    private final Paint paint3d = new Paint();
+    private final Paint maskPaint = new Paint();
+
+    public void setSize(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+
+        this.pageCenterX = width / 2;
+        this.pageCenterY = height / 2;
+
+        topSideOfPage = height / 5;
+        bottomSideOfPage = topSideOfPage * 4;
+        leftSideOfPage = width / 5;
+        rightSideOfPage = leftSideOfPage * 4;
+
+        int middleOfPageWidth = leftSideOfPage * 3;
+        int girdleOfPageHeight = topSideOfPage * 3;
+
+        vSidesOfPageRect.set(0, 0, width, topSideOfPage);
+        girdleOfPageSrcRect.set(0, topSideOfPage, width, bottomSideOfPage);
+        girdleOfPageDstRect.set(0, 0, width, girdleOfPageHeight);
+        bottomOfPageRect.set(0, bottomSideOfPage, width, height);
+
+        sidesOfPageRect.set(0, 0, leftSideOfPage, height);
+        middleOfPageSrcRect.set(leftSideOfPage, 0, rightSideOfPage, height);
+        middleOfPageDstRect.set(0, 0, middleOfPageWidth, height);
+        rightOfPageRect.set(rightSideOfPage, 0, width, height);
+
+        initGradients();
+
+        // offscreen bitmaps are reused or resized on first draw that needs them
+        arePageBitmapsValid = false;
+    }
+
+    private void initGradients()
+    {
+        pageTopGradient = new LinearGradient(
+                0, 0, 0, topSideOfPage,
+                Color.TRANSPARENT, backgroundColor, Shader.TileMode.CLAMP);
+        pageBottomGradient = new LinearGradient(
+                0, 0, 0, topSideOfPage,
+                backgroundColor, Color.TRANSPARENT, Shader.TileMode.CLAMP);
+
+        pageLeftGradient = new LinearGradient(
+                0, pageCenterY, leftSideOfPage, pageCenterY,
+                Color.TRANSPARENT, backgroundColor, Shader.TileMode.CLAMP);
+        pageRightGradient = new LinearGradient(
+                0, pageCenterY, leftSideOfPage, pageCenterY,
+                backgroundColor, Color.TRANSPARENT, Shader.TileMode.CLAMP);
+    }
+
+    public boolean isLaidOut()
+    {
+        return width > 0 && height > 0;
+    }
+
+    public void setVertical(boolean isVertical)
+    {
+        if (this.isVertical == isVertical) return;
+
+        this.isVertical = isVertical;
+        arePageBitmapsValid = false;
+    }
+
+    public int getBackgroundColor()
+    {
+        return backgroundColor;
+    }
+
+    public void setBackgroundColor(int color)
+    {
+        this.backgroundColor = color;
+        if (isLaidOut()) initGradients();
+        arePageBitmapsValid = false;
+    }
+
+    /*
+    * In low memory mode page is only a coverage mask, tinted while compositing,
+    * and middle strip is 16 bit if it is going to be opaque anyway.
+    * */
+    public void setLowMemoryMode(boolean lowMemoryMode)
+    {
+        this.lowMemoryMode = lowMemoryMode;
+        arePageBitmapsValid = false;
+    }
+
+    /*
+    * Returns the cleared offscreen page to draw content into.
+    * */
+    public Canvas beginPage()
+    {
+        if (!arePageBitmapsValid) preparePageBitmaps();
+
+        pageBitmap.eraseColor(Color.TRANSPARENT);
+        return pageCanvas;
+    }
+
+    private void preparePageBitmaps()
+    {
+        int middleOfPageWidth = leftSideOfPage * 3;
+        int girdleOfPageHeight = topSideOfPage * 3;
+
+        Bitmap.Config pageConfig = (lowMemoryMode) ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
+        Bitmap.Config middleConfig = (lowMemoryMode && Color.alpha(backgroundColor) == 255)
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        pageBitmap = reuseBitmap(pageBitmap, width, height, pageConfig);
+        pageCanvas = bindCanvas(pageCanvas, pageBitmap);
+
+        // only strips of current orientation are needed
+        if (isVertical)
+        {
+            pageTopBitmap = reuseBitmap(pageTopBitmap, width, topSideOfPage, Bitmap.Config.ARGB_8888);
+            pageGirdleBitmap = reuseBitmap(pageGirdleBitmap, width, girdleOfPageHeight, middleConfig);
+            pageBottomBitmap = reuseBitmap(pageBottomBitmap, width, topSideOfPage, Bitmap.Config.ARGB_8888);
+
+            pageTopCanvas = bindCanvas(pageTopCanvas, pageTopBitmap);
+            pageGirdleCanvas = bindCanvas(pageGirdleCanvas, pageGirdleBitmap);
+            pageBottomCanvas = bindCanvas(pageBottomCanvas, pageBottomBitmap);
+
+            releaseHorizontalStrips();
+        }else {
+            pageLeftBitmap = reuseBitmap(pageLeftBitmap, leftSideOfPage, height, Bitmap.Config.ARGB_8888);
+            pageMiddleBitmap = reuseBitmap(pageMiddleBitmap, middleOfPageWidth, height, middleConfig);
+            pageRightBitmap = reuseBitmap(pageRightBitmap, leftSideOfPage, height, Bitmap.Config.ARGB_8888);
+
+            pageLeftCanvas = bindCanvas(pageLeftCanvas, pageLeftBitmap);
+            pageMiddleCanvas = bindCanvas(pageMiddleCanvas, pageMiddleBitmap);
+            pageRightCanvas = bindCanvas(pageRightCanvas, pageRightBitmap);
+
+            releaseVerticalStrips();
+        }
+
+        arePageBitmapsValid = true;
+    }
+
+    /*
+    * Returns given bitmap if it has the requested size and config, otherwise
+    * gives it back to the pool and borrows a suitable one.
+    * */
+    private static Bitmap reuseBitmap(Bitmap bitmap, int width, int height, Bitmap.Config config)
+    {
+        if (bitmap != null)
+        {
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config)
+                return bitmap;
+
+            BitmapPool.release(bitmap);
+        }
+
+        return BitmapPool.acquire(width, height, config);
+    }
+
+    /*
+    * Gives all offscreen bitmaps back to the pool.
+    * */
+    public void release()
+    {
+        releaseVerticalStrips();
+        releaseHorizontalStrips();
+
+        BitmapPool.release(pageBitmap);
+        pageBitmap = null;
+        pageCanvas = null;
+
+        arePageBitmapsValid = false;
+    }
+
+    private void releaseVerticalStrips()
+    {
+        BitmapPool.release(pageTopBitmap);
+        BitmapPool.release(pageGirdleBitmap);
+        BitmapPool.release(pageBottomBitmap);
+
+        pageTopBitmap = pageGirdleBitmap = pageBottomBitmap = null;
+        pageTopCanvas = pageGirdleCanvas = pageBottomCanvas = null;
+    }
+
+    private void releaseHorizontalStrips()
+    {
+        BitmapPool.release(pageLeftBitmap);
+        BitmapPool.release(pageMiddleBitmap);
+        BitmapPool.release(pageRightBitmap);
+
+        pageLeftBitmap = pageMiddleBitmap = pageRightBitmap = null;
+        pageLeftCanvas = pageMiddleCanvas = pageRightCanvas = null;
+    }
+
+    // canvases are dropped with their bitmaps, since a canvas keeps its bitmap alive
+    private static Canvas bindCanvas(Canvas canvas, Bitmap bitmap)
+    {
+        if (canvas == null) return new Canvas(bitmap);
+
+        canvas.setBitmap(bitmap);
+        return canvas;
+    }
+
+    /*
+    * Paint for drawing page bitmap to strips (or view): null for a normal page,
+    * and a paint of given color to tint the mask of low memory mode.
+    * */
+    private Paint getPageContentPaint(int tintColor)
+    {
+        if (pageBitmap.getConfig() != Bitmap.Config.ALPHA_8) return null;
+
+        maskPaint.setColor(tintColor);
+        return maskPaint;
+    }
+
+    /*
+    * Copies page drawn since beginPage to canvas as it is.
+    * */
+    public void drawPageFlat(Canvas canvas, int tintColor)
+    {
+        canvas.drawBitmap(pageBitmap, 0, 0, getPageContentPaint(tintColor));
+    }
+
+    /*
+    * Projects page drawn since beginPage to canvas.
+    * */
+    public void drawPageIn3D(Canvas canvas, int tintColor)
+    {
+        if (isVertical)
+            drawPageInVertical3D(pageBitmap, canvas, getPageContentPaint(tintColor));
+        else
+            drawPageIn3D(pageBitmap, canvas, getPageContentPaint(tintColor));
+    }
+
+    /*
+    * Single pass version of 3D drawing: each band is drawn straight into the
+    * canvas, clipped and projected by the same matrix its bitmap would get.
+    * */
+    public void drawPageIn3D(Canvas canvas, PageRenderer renderer)
+    {
+        if (isVertical)
+            drawPageInVertical3D(canvas, renderer);
+        else
+            drawPageInHorizontal3D(canvas, renderer);
+    }
+
+    private void drawPageIn3D(Bitmap pageBitmap, Canvas canvas, Paint contentPaint)
+    {
+        pageLeftBitmap.eraseColor(Color.TRANSPARENT);
+        pageMiddleBitmap.eraseColor(backgroundColor);
+        pageRightBitmap.eraseColor(Color.TRANSPARENT);
+
+        paint3d.setShader(pageLeftGradient);
+        pageLeftCanvas.drawRect(sidesOfPageRect, paint3d);
+        pageLeftCanvas.drawBitmap(pageBitmap, sidesOfPageRect, sidesOfPageRect, contentPaint);
+
+        pageMiddleCanvas.drawBitmap(pageBitmap, middleOfPageSrcRect, middleOfPageDstRect, contentPaint);
+
+        paint3d.setShader(pageRightGradient);
+        pageRightCanvas.drawRect(sidesOfPageRect, paint3d);
+        pageRightCanvas.drawBitmap(pageBitmap, rightOfPageRect, sidesOfPageRect, contentPaint);
+
+        prepareMatrix(mMatrix, 0, -45);
+
+        mMatrix.preTranslate(-leftSideOfPage, -pageCenterY);
+        mMatrix.postTranslate(leftSideOfPage, pageCenterY);
+
+        canvas.drawBitmap(pageLeftBitmap, mMatrix, null);
+
+        canvas.drawBitmap(pageMiddleBitmap, null, middleOfPageSrcRect, null);
+
+        prepareMatrix(mMatrix, 0, 45);
+
+        mMatrix.preTranslate(0, -pageCenterY);
+        mMatrix.postTranslate(0, pageCenterY);
+
+        mMatrix.postTranslate(rightSideOfPage, 0);
+
+        canvas.drawBitmap(pageRightBitmap, mMatrix, null);
+    }
+
+    private void drawPageInVertical3D(Bitmap pageBitmap, Canvas canvas, Paint contentPaint)
+    {
+        pageTopBitmap.eraseColor(Color.TRANSPARENT);
+        pageGirdleBitmap.eraseColor(backgroundColor);
+        pageBottomBitmap.eraseColor(Color.TRANSPARENT);
+
+        paint3d.setShader(pageTopGradient);
+        pageTopCanvas.drawRect(vSidesOfPageRect, paint3d);
+        pageTopCanvas.drawBitmap(pageBitmap, vSidesOfPageRect, vSidesOfPageRect, contentPaint);
+
+        pageGirdleCanvas.drawBitmap(pageBitmap, girdleOfPageSrcRect, girdleOfPageDstRect, contentPaint);
+
+        paint3d.setShader(pageBottomGradient);
+        pageBottomCanvas.drawRect(vSidesOfPageRect, paint3d);
+        pageBottomCanvas.drawBitmap(pageBitmap, bottomOfPageRect, vSidesOfPageRect, contentPaint);
+
+        prepareMatrix(mMatrix, -45, 0);
+
+        mMatrix.preTranslate(-pageCenterX, -topSideOfPage);
+        mMatrix.postTranslate(pageCenterX, topSideOfPage);
+
+        canvas.drawBitmap(pageTopBitmap, mMatrix, null);
+
+        canvas.drawBitmap(pageGirdleBitmap, null, girdleOfPageSrcRect, null);
+
+        prepareMatrix(mMatrix, 45, 0);
+
+        mMatrix.preTranslate(-pageCenterX, 0);
+        mMatrix.postTranslate(pageCenterX, 0);
+
+        mMatrix.postTranslate(0, bottomSideOfPage);
+
+        canvas.drawBitmap(pageBottomBitmap, mMatrix, null);
+    }
+
+    private void drawPageInHorizontal3D(Canvas canvas, PageRenderer renderer)
+    {
+        prepareMatrix(mMatrix, 0, -45);
+
+        mMatrix.preTranslate(-leftSideOfPage, -pageCenterY);
+        mMatrix.postTranslate(leftSideOfPage, pageCenterY);
+
+        int saveCount = canvas.save();
+        canvas.concat(mMatrix);
+        canvas.clipRect(sidesOfPageRect);
+        paint3d.setShader(pageLeftGradient);
+        canvas.drawRect(sidesOfPageRect, paint3d);
+        renderer.drawPage(canvas);
+        canvas.restoreToCount(saveCount);
+
+        saveCount = canvas.save();
+        canvas.clipRect(middleOfPageSrcRect);
+        canvas.drawColor(backgroundColor);
+        renderer.drawPage(canvas);
+        canvas.restoreToCount(saveCount);
+
+        prepareMatrix(mMatrix, 0, 45);
+
+        mMatrix.preTranslate(0, -pageCenterY);
+        mMatrix.postTranslate(0, pageCenterY);
+
+        mMatrix.postTranslate(rightSideOfPage, 0);
+
+        saveCount = canvas.save();
+        canvas.concat(mMatrix);
+        canvas.clipRect(sidesOfPageRect);
+        paint3d.setShader(pageRightGradient);
+        canvas.drawRect(sidesOfPageRect, paint3d);
+        canvas.translate(-rightSideOfPage, 0);
+        renderer.drawPage(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private void drawPageInVertical3D(Canvas canvas, PageRenderer renderer)
+    {
+        prepareMatrix(mMatrix, -45, 0);
+
+        mMatrix.preTranslate(-pageCenterX, -topSideOfPage);
+        mMatrix.postTranslate(pageCenterX, topSideOfPage);
+
+        int saveCount = canvas.save();
+        canvas.concat(mMatrix);
+        canvas.clipRect(vSidesOfPageRect);
+        paint3d.setShader(pageTopGradient);
+        canvas.drawRect(vSidesOfPageRect, paint3d);
+        renderer.drawPage(canvas);
+        canvas.restoreToCount(saveCount);
+
+        saveCount = canvas.save();
+        canvas.clipRect(girdleOfPageSrcRect);
+        canvas.drawColor(backgroundColor);
+        renderer.drawPage(canvas);
+        canvas.restoreToCount(saveCount);
+
+        prepareMatrix(mMatrix, 45, 0);
+
+        mMatrix.preTranslate(-pageCenterX, 0);
+        mMatrix.postTranslate(pageCenterX, 0);
+
+        mMatrix.postTranslate(0, bottomSideOfPage);
+
+        saveCount = canvas.save();
+        canvas.concat(mMatrix);
+        canvas.clipRect(vSidesOfPageRect);
+        paint3d.setShader(pageBottomGradient);
+        canvas.drawRect(vSidesOfPageRect, paint3d);
+        canvas.translate(0, -bottomSideOfPage);
+        renderer.drawPage(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /*
+    * Draws lines along both sides of a page, parallel to scrolling axis.
+    * */
+    static void drawBorders(Canvas canvas, boolean isVertical, int width, int height, Paint paint)
+    {
+        if (isVertical)
+        {
+            canvas.drawLine(0, 0, 0, height, paint);
+            canvas.drawLine(width, 0, width, height, paint);
+        }else {
+            canvas.drawLine(0, 0, width, 0, paint);
+            canvas.drawLine(0, height, width, height, paint);
+        }
+    }
+
+    private void prepareMatrix(final Matrix outMatrix, float angleX, float angleY)
+    {
+        mCamera.save();
+
+        mCamera.rotateX(angleX);
+        mCamera.rotateY(angleY);
+
+        mCamera.getMatrix(outMatrix);
+        mCamera.restore();
+    }
+}
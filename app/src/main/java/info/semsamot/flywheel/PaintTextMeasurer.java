@@ -0,0 +1,57 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import info.semsamot.flywheel.core.TextMeasurer;
+
+/*
+* Measures text with an Android Paint.
+* */
+class PaintTextMeasurer implements TextMeasurer
+{
+    private final Paint paint;
+    private final Rect bounds = new Rect();
+
+    PaintTextMeasurer(Paint paint)
+    {
+        this.paint = paint;
+    }
+
+    @Override
+    public void setTextSize(float textSize) {
+        paint.setTextSize(textSize);
+    }
+
+    @Override
+    public int getTextHeight(String text) {
+        paint.getTextBounds(text, 0, text.length(), bounds);
+        return bounds.height();
+    }
+
+    @Override
+    public int breakText(String text, int start, int end, float maxWidth) {
+        return paint.breakText(text, start, end, true, maxWidth, null);
+    }
+
+    @Override
+    public float measureText(String text) {
+        return paint.measureText(text);
+    }
+}
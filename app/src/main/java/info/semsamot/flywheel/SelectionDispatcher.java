@@ -0,0 +1,180 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.Executor;
+
+/*
+* Coalesces selection events of a Flywheel for its OnSelectionChangeListener.
+* Changes of the item under center are delivered at most once per interval;
+* a change that comes too early is held back until the interval has passed,
+* and replaced by later ones meanwhile, so the last one is never lost.
+* A selection is reported as settled once, when the wheel comes to rest on it.
+* Events are delivered on the given executor, or right away on UI thread
+* if there is none. Must be fed from the UI thread.
+* */
+class SelectionDispatcher
+{
+    private static final int DEFAULT_CENTER_INTERVAL = 100;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Flywheel.OnSelectionChangeListener listener;
+    private Executor executor;
+    private int centerInterval = DEFAULT_CENTER_INTERVAL;
+
+    private int reportedCenter = -1;
+    private long reportedCenterTime;
+    private int pendingCenter = -1;
+    private boolean isCenterPending;
+
+    private int settledPosition = -1;
+
+    private final Runnable pendingCenterDelivery = new Runnable() {
+        @Override
+        public void run() {
+            isCenterPending = false;
+            deliverCenter(pendingCenter);
+        }
+    };
+
+    public void setListener(Flywheel.OnSelectionChangeListener listener, Executor executor)
+    {
+        cancelPendingCenter();
+        this.listener = listener;
+        this.executor = executor;
+        forget();
+    }
+
+    public Flywheel.OnSelectionChangeListener getListener()
+    {
+        return listener;
+    }
+
+    public int getCenterInterval()
+    {
+        return centerInterval;
+    }
+
+    public void setCenterInterval(int millis)
+    {
+        this.centerInterval = Math.max(0, millis);
+    }
+
+    /*
+    * Forgets reported positions (e.g. after items have moved), so next
+    * events are delivered even if their positions are the same.
+    * */
+    public void forget()
+    {
+        reportedCenter = -1;
+        settledPosition = -1;
+    }
+
+    /*
+    * Drops a held back center change, e.g. when the wheel is detached,
+    * so nothing is delivered for a wheel that is gone.
+    * */
+    public void cancel()
+    {
+        cancelPendingCenter();
+    }
+
+    public void centerItemChanged(int position)
+    {
+        if (listener == null) return;
+
+        if (position == reportedCenter)
+        {
+            // came back before a pending change was delivered
+            cancelPendingCenter();
+            return;
+        }
+
+        long wait = reportedCenterTime + centerInterval - SystemClock.uptimeMillis();
+        if (wait <= 0)
+        {
+            cancelPendingCenter();
+            deliverCenter(position);
+            return;
+        }
+
+        pendingCenter = position;
+        if (!isCenterPending)
+        {
+            isCenterPending = true;
+            handler.postDelayed(pendingCenterDelivery, wait);
+        }
+    }
+
+    public void selectionSettled(int position)
+    {
+        if (listener == null || position < 0 || position == settledPosition) return;
+
+        // item under center catches up before the selection settles on it
+        cancelPendingCenter();
+        if (position != reportedCenter) deliverCenter(position);
+
+        settledPosition = position;
+        dispatch(true, position);
+    }
+
+    private void cancelPendingCenter()
+    {
+        if (!isCenterPending) return;
+
+        isCenterPending = false;
+        handler.removeCallbacks(pendingCenterDelivery);
+    }
+
+    private void deliverCenter(int position)
+    {
+        reportedCenter = position;
+        reportedCenterTime = SystemClock.uptimeMillis();
+        dispatch(false, position);
+    }
+
+    private void dispatch(final boolean isSettled, final int position)
+    {
+        final Flywheel.OnSelectionChangeListener listener = this.listener;
+
+        if (executor == null)
+        {
+            deliver(listener, isSettled, position);
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(listener, isSettled, position);
+            }
+        });
+    }
+
+    private static void deliver(Flywheel.OnSelectionChangeListener listener, boolean isSettled, int position)
+    {
+        if (isSettled)
+            listener.onSelectionSettled(position);
+        else
+            listener.onCenterItemChanged(position);
+    }
+}
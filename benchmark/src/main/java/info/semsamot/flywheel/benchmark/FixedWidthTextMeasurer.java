@@ -0,0 +1,52 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.benchmark;
+
+import info.semsamot.flywheel.core.TextMeasurer;
+
+/*
+* Measures text as if every char had the same advance, roughly that of an
+* average glyph, so wrapping does the same amount of work as on a device.
+* */
+class FixedWidthTextMeasurer implements TextMeasurer
+{
+    private static final float ADVANCE = 0.55f;
+    private static final float HEIGHT = 0.75f;
+
+    private float textSize;
+
+    @Override
+    public void setTextSize(float textSize) {
+        this.textSize = textSize;
+    }
+
+    @Override
+    public int getTextHeight(String text) {
+        return (text.length() > 0) ? Math.round(textSize * HEIGHT) : 0;
+    }
+
+    @Override
+    public int breakText(String text, int start, int end, float maxWidth) {
+        int fits = (int) (maxWidth / (textSize * ADVANCE));
+        return Math.max(0, Math.min(end - start, fits));
+    }
+
+    @Override
+    public float measureText(String text) {
+        return text.length() * textSize * ADVANCE;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import info.semsamot.flywheel.core.WheelGeometry;
+
+/*
+* Layout arithmetic of a vertical wheel of 480px, as done by Flywheel:
+* rects of all items after a layout, and per frame searches of the visible
+* range (onDraw) and of the item at center (autoCenterItem).
+* */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark
+{
+    private static final int PAGE_LENGTH = 480;
+    private static final int SLICE = PAGE_LENGTH / 3;
+    private static final int ORIGIN = SLICE;
+    // power of two, so the cursor wraps with a mask
+    private static final int POSITIONS = 1024;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    int itemCount;
+
+    private int[] itemStarts;
+    private int[] scrollPositions;
+    private int cursor;
+
+    @Setup
+    public void setUp()
+    {
+        itemStarts = new int[itemCount];
+
+        Random random = new Random(42);
+        int maxScrollPos = WheelGeometry.maxScrollPos(ORIGIN, SLICE, itemCount);
+        scrollPositions = new int[POSITIONS];
+        for (int i=0; i < POSITIONS; i++)
+        {
+            scrollPositions[i] = random.nextInt(Math.max(1, maxScrollPos));
+        }
+    }
+
+    private int nextScrollPos()
+    {
+        cursor = (cursor + 1) & (POSITIONS - 1);
+        return scrollPositions[cursor];
+    }
+
+    @Benchmark
+    public int[] itemRects()
+    {
+        for (int i=0; i < itemCount; i++)
+        {
+            itemStarts[i] = WheelGeometry.itemStart(ORIGIN, SLICE, i);
+        }
+        return itemStarts;
+    }
+
+    @Benchmark
+    public int visibleRange()
+    {
+        int scrollPos = nextScrollPos();
+        int firstVisible = WheelGeometry.firstVisible(ORIGIN, SLICE, scrollPos);
+        int lastVisible = WheelGeometry.lastVisible(ORIGIN, SLICE, scrollPos, PAGE_LENGTH, itemCount);
+        return firstVisible + lastVisible;
+    }
+
+    @Benchmark
+    public int centerItem()
+    {
+        int scrollPos = nextScrollPos();
+        int index = WheelGeometry.centerIndex(ORIGIN, SLICE, scrollPos, PAGE_LENGTH, itemCount);
+        return WheelGeometry.scrollPosOfItem(ORIGIN, SLICE, PAGE_LENGTH, index);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import info.semsamot.flywheel.core.TextChunk;
+import info.semsamot.flywheel.core.TextWrapper;
+
+/*
+* Word wrapping of one item text into a 480x160 rect, with default text size
+* and padding of items. Long texts get truncated, like on a device.
+* */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextWrapBenchmark
+{
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 160;
+    private static final int TEXT_SIZE = 30;
+    private static final int TEXT_PADDING = 30;
+
+    @Param({"1", "20", "200"})
+    int textLength;
+
+    private final FixedWidthTextMeasurer measurer = new FixedWidthTextMeasurer();
+    private final ArrayList<TextChunk> textChunks = new ArrayList<TextChunk>();
+    private String text;
+
+    @Setup
+    public void setUp()
+    {
+        // words of 1 to 10 letters
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder(textLength);
+        while (builder.length() < textLength)
+        {
+            if (builder.length() > 0) builder.append(' ');
+            int wordLength = 1 + random.nextInt(10);
+            for (int i=0; i < wordLength; i++)
+            {
+                builder.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        builder.setLength(textLength);
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public int wrapText()
+    {
+        textChunks.clear();
+        int lineSpacing = TextWrapper.wrap(measurer, text, TEXT_SIZE, TEXT_PADDING,
+                WIDTH, HEIGHT, textChunks);
+        return lineSpacing + textChunks.size();
+    }
+}
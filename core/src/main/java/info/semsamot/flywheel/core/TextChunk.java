@@ -0,0 +1,32 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.core;
+
+/*
+* A line of wrapped text and where it is drawn, relative to the item rect.
+* */
+public class TextChunk
+{
+    public int posX, posY;
+    public String text;
+
+    public TextChunk(String text, int posY)
+    {
+        this.text = text;
+        this.posY = posY;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+* Index from texts of items to their positions, for exact lookups (a hash map)
+* and case insensitive prefix lookups (binary search in case folded texts).
+* Added texts are kept unsorted until next prefix lookup, when they are sorted
+* and merged into sorted ones. Inserting, removing or changing a text updates
+* the index in place: positions after it are shifted, nothing is sorted again.
+* Not thread safe.
+* */
+public class TextIndex
+{
+    private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            int result = lhs.foldedText.compareTo(rhs.foldedText);
+            return (result != 0) ? result : lhs.position - rhs.position;
+        }
+    };
+
+    // first position of each text
+    private final HashMap<String, Integer> exact = new HashMap<String, Integer>();
+    private ArrayList<Entry> sorted = new ArrayList<Entry>();
+    private final ArrayList<Entry> unsorted = new ArrayList<Entry>();
+    // entry of each position
+    private final ArrayList<Entry> entries = new ArrayList<Entry>();
+
+    public int size() {
+        return entries.size();
+    }
+
+    /*
+    * Adds text of item at next position.
+    * */
+    public void add(String text)
+    {
+        // nothing follows it, so unlike insert it shifts no positions
+        Entry entry = new Entry(text, entries.size());
+        entries.add(entry);
+        unsorted.add(entry);
+
+        if (!exact.containsKey(text)) exact.put(text, entry.position);
+    }
+
+    /*
+    * Inserts text of an item inserted before given position.
+    * */
+    public void insert(int position, String text)
+    {
+        // shifting keeps order of sorted entries, since ties are ordered by position
+        shiftPositions(position, 1);
+
+        Entry entry = new Entry(text, position);
+        entries.add(position, entry);
+        unsorted.add(entry);
+
+        Integer first = exact.get(text);
+        if (first == null || first > position) exact.put(text, position);
+    }
+
+    /*
+    * Removes text of item of given position.
+    * */
+    public void remove(int position)
+    {
+        Entry entry = entries.remove(position);
+        unlink(entry);
+
+        boolean wasFirst = forgetFirst(entry);
+        shiftPositions(position, -1);
+        if (wasFirst) findFirst(entry.text, position);
+    }
+
+    /*
+    * Changes text of item of given position.
+    * */
+    public void set(int position, String text)
+    {
+        Entry oldEntry = entries.get(position);
+        if (oldEntry.text.equals(text)) return;
+
+        unlink(oldEntry);
+        if (forgetFirst(oldEntry)) findFirst(oldEntry.text, position + 1);
+
+        Entry entry = new Entry(text, position);
+        entries.set(position, entry);
+        unsorted.add(entry);
+
+        Integer first = exact.get(text);
+        if (first == null || first > position) exact.put(text, position);
+    }
+
+    public void clear()
+    {
+        exact.clear();
+        sorted.clear();
+        unsorted.clear();
+        entries.clear();
+    }
+
+    /*
+    * First position of given text, or -1.
+    * */
+    public int indexOf(String text)
+    {
+        Integer position = exact.get(text);
+        return (position != null) ? position : -1;
+    }
+
+    /*
+    * Position of the alphabetically first text (ignoring case) that starts
+    * with given prefix, or -1. Of equal texts the first one is found.
+    * */
+    public int indexOfPrefix(String prefix)
+    {
+        mergeUnsorted();
+
+        String foldedPrefix = fold(prefix);
+
+        // lower bound of prefix
+        int low = 0;
+        int high = sorted.size();
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (sorted.get(middle).foldedText.compareTo(foldedPrefix) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        if (low < sorted.size() && sorted.get(low).foldedText.startsWith(foldedPrefix))
+            return sorted.get(low).position;
+        return -1;
+    }
+
+    private void mergeUnsorted()
+    {
+        if (unsorted.isEmpty()) return;
+
+        Collections.sort(unsorted, ENTRY_ORDER);
+
+        ArrayList<Entry> merged = new ArrayList<Entry>(sorted.size() + unsorted.size());
+        int i = 0, j = 0;
+        while (i < sorted.size() && j < unsorted.size())
+        {
+            if (ENTRY_ORDER.compare(sorted.get(i), unsorted.get(j)) <= 0)
+                merged.add(sorted.get(i++));
+            else
+                merged.add(unsorted.get(j++));
+        }
+        while (i < sorted.size()) merged.add(sorted.get(i++));
+        while (j < unsorted.size()) merged.add(unsorted.get(j++));
+
+        sorted = merged;
+        unsorted.clear();
+    }
+
+    /*
+    * Adds delta to positions from given one on.
+    * */
+    private void shiftPositions(int from, int delta)
+    {
+        if (from >= entries.size()) return;
+
+        for (int i = from; i < entries.size(); i++)
+        {
+            entries.get(i).position += delta;
+        }
+
+        for (Map.Entry<String, Integer> first : exact.entrySet())
+        {
+            if (first.getValue() >= from) first.setValue(first.getValue() + delta);
+        }
+    }
+
+    /*
+    * Takes given entry out of sorted (or not yet sorted) entries.
+    * */
+    private void unlink(Entry entry)
+    {
+        int i = Collections.binarySearch(sorted, entry, ENTRY_ORDER);
+        if (i >= 0 && sorted.get(i) == entry)
+            sorted.remove(i);
+        else
+            unsorted.remove(entry);
+    }
+
+    /*
+    * Drops exact lookup of text of given entry, if it is the first one of
+    * that text. Returns whether it was.
+    * */
+    private boolean forgetFirst(Entry entry)
+    {
+        Integer first = exact.get(entry.text);
+        if (first == null || first != entry.position) return false;
+
+        exact.remove(entry.text);
+        return true;
+    }
+
+    /*
+    * Points exact lookup of given text to its first position from given one on, if any.
+    * */
+    private void findFirst(String text, int from)
+    {
+        for (int i = from; i < entries.size(); i++)
+        {
+            if (entries.get(i).text.equals(text))
+            {
+                exact.put(text, i);
+                return;
+            }
+        }
+    }
+
+    private static String fold(String text)
+    {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static class Entry
+    {
+        final String text;
+        final String foldedText;
+        int position;
+
+        Entry(String text, int position)
+        {
+            this.text = text;
+            this.foldedText = fold(text);
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.core;
+
+/*
+* Measures text for wrapping. Lets the wrapping logic run with an Android
+* Paint as well as on a plain JVM (tests, benchmarks).
+* An instance is used by one thread at a time.
+* */
+public interface TextMeasurer
+{
+    public void setTextSize(float textSize);
+
+    /*
+    * Height of the bounds of given text, with current text size.
+    * */
+    public int getTextHeight(String text);
+
+    /*
+    * Number of chars from start (at most end - start) that fit in maxWidth.
+    * */
+    public int breakText(String text, int start, int end, float maxWidth);
+
+    public float measureText(String text);
+}
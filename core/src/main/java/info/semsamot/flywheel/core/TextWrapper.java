@@ -0,0 +1,89 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.core;
+
+import java.util.List;
+
+public final class TextWrapper
+{
+    private TextWrapper() {}
+
+    /*
+    * Breaks text into lines that fit in a rect of given size, centered in it.
+    * Only touches given measurer and list, so it can run on any thread.
+    * Returns line spacing.
+    * */
+    public static int wrap(TextMeasurer measurer, String text, int textSize, int textPadding,
+                           int width, int height, List<TextChunk> textChunks)
+    {
+        measurer.setTextSize(textSize);
+        int lineSpacing = measurer.getTextHeight(text) + 5;
+
+        int start = 0;
+        int breakAt;
+        int lastWord;
+        boolean mustTruncate = false;
+
+        //FIXME add support for line breaks ( \n )
+        do
+        {
+            breakAt = start + measurer.breakText(
+                    text, start, text.length(), width - textPadding);
+
+            // if breakAt is not at the end of text, put it at last word
+            if (breakAt != text.length())
+            {
+                lastWord = text.lastIndexOf(" ", breakAt);
+                if (lastWord != -1 && lastWord > start) breakAt = lastWord;
+            }
+
+            String slice = text.substring(start, breakAt);
+
+            // if next line is out of rect bottom then truncate this line and finish.
+            if ( (textChunks.size()+2) * lineSpacing > height + textPadding )
+            {
+                mustTruncate = true;
+                if (slice.length() >= 3)
+                {
+                    slice = slice.substring(0, slice.length() - 3) + "...";
+                }
+            }
+
+            textChunks.add(
+                    new TextChunk(slice, (textChunks.size()+1) * lineSpacing) );
+
+            start = breakAt;
+
+            if (mustTruncate) break;
+
+        }while (breakAt < text.length());
+
+
+        int textChunksHeight = lineSpacing * textChunks.size();
+        int offset = (height - textChunksHeight) / 2;
+
+        for (int i=0; i < textChunks.size(); i++)
+        {
+            TextChunk textChunk = textChunks.get(i);
+            textChunk.posY += offset;
+            // center text horizontally, so drawing does not need to measure it
+            textChunk.posX = ( width - (int) measurer.measureText(textChunk.text) ) / 2;
+        }
+
+        return lineSpacing;
+    }
+}
@@ -0,0 +1,363 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.core;
+
+/*
+* State of a wheel without any rendering: its size and orientation, geometry
+* of items, scroll position with its bounds and selected item.
+* Items are one slice (a third of the wheel length) long and laid out one
+* after another starting one slice in, so first and last items can be
+* brought to center. Positions are along the scrolling axis.
+* A cyclic wheel wraps around: its scroll position is kept modulo the length
+* of all items and "virtual" indices (e.g. of visible items) run past both
+* ends of the items, to be mapped to items with toItemIndex.
+* Not thread safe.
+* */
+public class Wheel
+{
+    private boolean isVertical = true;
+    private int width, height;
+    private int slice, origin;
+
+    private int itemCount;
+    private int selectedIndex = -1;
+
+    private int scrollPos;
+    private int maxScrollPos;
+
+    private boolean isCyclic;
+
+    public boolean isVertical() {
+        return isVertical;
+    }
+
+    public void setVertical(boolean isVertical) {
+        this.isVertical = isVertical;
+        layout();
+    }
+
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        layout();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /*
+    * Size along the scrolling axis.
+    * */
+    public int getLength() {
+        return (isVertical) ? height : width;
+    }
+
+    /*
+    * True once it has a size big enough to hold items.
+    * */
+    public boolean isLaidOut() {
+        return slice > 0;
+    }
+
+    private void layout()
+    {
+        slice = getLength() / 3;
+        origin = slice;
+        updateMaxScrollPos();
+        scrollPos = normalize(scrollPos);
+    }
+
+    public boolean isCyclic() {
+        return isCyclic;
+    }
+
+    public void setCyclic(boolean isCyclic) {
+        this.isCyclic = isCyclic;
+        scrollPos = normalize(scrollPos);
+    }
+
+    /*
+    * Length of all items, which is the period of a cyclic wheel.
+    * */
+    public int getContentLength() {
+        return itemCount * slice;
+    }
+
+    private int normalize(int scrollPos)
+    {
+        int contentLength = getContentLength();
+        if (!isCyclic || contentLength < 1) return scrollPos;
+        return WheelGeometry.wrap(scrollPos, contentLength);
+    }
+
+    public int getSlice() {
+        return slice;
+    }
+
+    public int getOrigin() {
+        return origin;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /*
+    * Keeps selection in range of new count; first item is selected
+    * if there was no selection.
+    * */
+    public void setItemCount(int itemCount)
+    {
+        this.itemCount = itemCount;
+        if (selectedIndex >= itemCount) selectedIndex = itemCount - 1;
+        if (selectedIndex < 0 && itemCount > 0) selectedIndex = 0;
+        updateMaxScrollPos();
+        scrollPos = normalize(scrollPos);
+    }
+
+    /*
+    * Replaces all items; first item (if any) is selected and scroll is reset.
+    * */
+    public void reset(int itemCount)
+    {
+        selectedIndex = -1;
+        scrollPos = 0;
+        setItemCount(itemCount);
+    }
+
+    /*
+    * Makes room for an item inserted before given position. Selected item
+    * keeps its offset from center.
+    * */
+    public void insertItem(int position)
+    {
+        int scrollOffset = getScrollOffsetOfSelectedItem();
+
+        itemCount++;
+        if (selectedIndex < 0)
+            selectedIndex = 0;
+        else if (position <= selectedIndex)
+            selectedIndex++;
+
+        onItemsMoved(scrollOffset);
+    }
+
+    /*
+    * Removes item of given position. If it was selected, its next item
+    * (or previous one, if it was last) becomes selected, and true is returned.
+    * */
+    public boolean removeItem(int position)
+    {
+        int scrollOffset = getScrollOffsetOfSelectedItem();
+
+        itemCount--;
+        boolean isSelectionRemoved = (position == selectedIndex);
+        if (position < selectedIndex || selectedIndex == itemCount)
+            selectedIndex--;
+
+        onItemsMoved(scrollOffset);
+        return isSelectionRemoved;
+    }
+
+    private int getScrollOffsetOfSelectedItem()
+    {
+        if (slice < 1 || selectedIndex < 0) return 0;
+        return scrollPos - scrollPosOfItem(selectedIndex);
+    }
+
+    private void onItemsMoved(int scrollOffset)
+    {
+        updateMaxScrollPos();
+        if (slice > 0 && selectedIndex >= 0) scrollPos = scrollPosOfItem(selectedIndex) + scrollOffset;
+        scrollPos = normalize(scrollPos);
+    }
+
+    public int getSelectedIndex() {
+        return selectedIndex;
+    }
+
+    public void setSelectedIndex(int selectedIndex) {
+        this.selectedIndex = selectedIndex;
+    }
+
+    /*
+    * Scrolls selected item to center, if laid out.
+    * */
+    public void centerSelectedItem()
+    {
+        if (slice > 0 && selectedIndex >= 0) scrollPos = normalize(scrollPosOfItem(selectedIndex));
+    }
+
+    public int getScrollPos() {
+        return scrollPos;
+    }
+
+    /*
+    * Cyclic wheels take given position modulo length of content.
+    * */
+    public void setScrollPos(int scrollPos) {
+        this.scrollPos = normalize(scrollPos);
+    }
+
+    /*
+    * Scrolls by given distance, only if it stays in bounds.
+    * Returns whether it has scrolled.
+    * */
+    public boolean scrollBy(int distance)
+    {
+        int newScrollPos = scrollPos + distance;
+        if (!isInBounds(newScrollPos)) return false;
+
+        scrollPos = normalize(newScrollPos);
+        return true;
+    }
+
+    /*
+    * Whether given scroll position is between first and last item at center;
+    * any position is, for a cyclic wheel with items.
+    * */
+    public boolean isInBounds(int scrollPos)
+    {
+        if (isCyclic) return itemCount > 0;
+        return scrollPos >= 0 && scrollPos <= maxScrollPos;
+    }
+
+    public int getMaxScrollPos() {
+        return maxScrollPos;
+    }
+
+    private void updateMaxScrollPos()
+    {
+        maxScrollPos = WheelGeometry.maxScrollPos(origin, slice, itemCount);
+    }
+
+    /*
+    * Start (top or left) of item of given index.
+    * */
+    public int itemStart(int index) {
+        return WheelGeometry.itemStart(origin, slice, index);
+    }
+
+    /*
+    * Index of item at given position, may be out of range of items.
+    * */
+    public int indexAt(int position) {
+        return WheelGeometry.indexAt(origin, slice, position);
+    }
+
+    /*
+    * First and last visible indices; virtual ones for a cyclic wheel.
+    * */
+    public int getFirstVisibleIndex()
+    {
+        return firstVisibleIndexAt(scrollPos);
+    }
+
+    public int getLastVisibleIndex()
+    {
+        return lastVisibleIndexAt(scrollPos);
+    }
+
+    /*
+    * Same as above, for page starting at given scroll position.
+    * */
+    public int firstVisibleIndexAt(int scrollPos)
+    {
+        if (isCyclic && itemCount > 0) return indexAt(scrollPos - 1);
+        return WheelGeometry.firstVisible(origin, slice, scrollPos);
+    }
+
+    public int lastVisibleIndexAt(int scrollPos)
+    {
+        if (isCyclic && itemCount > 0) return indexAt(scrollPos + getLength());
+        return WheelGeometry.lastVisible(origin, slice, scrollPos, getLength(), itemCount);
+    }
+
+    /*
+    * Index of item a (virtual) index refers to.
+    * */
+    public int toItemIndex(int index)
+    {
+        if (!isCyclic || itemCount < 1) return index;
+        return WheelGeometry.wrap(index, itemCount);
+    }
+
+    /*
+    * Whether item of given index is one of (virtual) indices first to last.
+    * */
+    public boolean isInWindow(int index, int first, int last)
+    {
+        if (!isCyclic || itemCount < 1) return index >= first && index <= last;
+        return WheelGeometry.wrap(index - first, itemCount) <= last - first;
+    }
+
+    /*
+    * Index of item nearest to center, or -1 if there are no items.
+    * */
+    public int getCenterIndex() {
+        return centerIndexAt(scrollPos);
+    }
+
+    /*
+    * Index of item that would be nearest to center at given scroll position,
+    * in range of items, or -1 if there are no items.
+    * */
+    public int centerIndexAt(int scrollPos)
+    {
+        if (isCyclic && itemCount > 0)
+            return toItemIndex(indexAt(scrollPos + getLength() / 2));
+        return WheelGeometry.centerIndex(origin, slice, scrollPos, getLength(), itemCount);
+    }
+
+    /*
+    * Scroll position that brings item of given index to center. For a cyclic
+    * wheel it is the nearest such position to current one, which may be out
+    * of [0, content length) so that animating to it takes the short way.
+    * */
+    public int scrollPosOfItem(int index)
+    {
+        int target = WheelGeometry.scrollPosOfItem(origin, slice, getLength(), index);
+
+        int contentLength = getContentLength();
+        if (isCyclic && contentLength > 0)
+        {
+            int distance = WheelGeometry.wrap(target - scrollPos, contentLength);
+            if (distance > contentLength / 2) distance -= contentLength;
+            target = scrollPos + distance;
+        }
+        return target;
+    }
+
+    /*
+    * Scroll position a wheel released (or flung) to given position should
+    * settle at, which brings the item nearest to center to center.
+    * For a cyclic wheel it is the one nearest to given position.
+    * */
+    public int snapTargetOf(int scrollPos)
+    {
+        if (isCyclic && itemCount > 0)
+            return WheelGeometry.scrollPosOfItem(origin, slice, getLength(), indexAt(scrollPos + getLength() / 2));
+
+        int centerIndex = centerIndexAt(scrollPos);
+        return (centerIndex < 0) ? scrollPos : scrollPosOfItem(centerIndex);
+    }
+}
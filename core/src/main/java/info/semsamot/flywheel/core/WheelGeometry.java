@@ -0,0 +1,99 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.flywheel.core;
+
+/*
+* Arithmetic of the wheel layout. Items are laid out one after another at a
+* fixed stride (slice), starting at origin, so positions and indices convert
+* to each other directly. Positions are in page coordinates along the
+* scrolling axis.
+* */
+public final class WheelGeometry
+{
+    private WheelGeometry() {}
+
+    /*
+    * Start (top or left) of the item of given index.
+    * */
+    public static int itemStart(int origin, int slice, int index)
+    {
+        return origin + index * slice;
+    }
+
+    /*
+    * Index of item at given position. Result may be out of range of items.
+    * */
+    public static int indexAt(int origin, int slice, int position)
+    {
+        int offset = position - origin;
+        int index = offset / slice;
+        // round toward negative infinity
+        if (offset < 0 && offset % slice != 0) index--;
+        return index;
+    }
+
+    /*
+    * First item visible when page starts at scrollPos;
+    * items touching the edge of screen are visible too.
+    * */
+    public static int firstVisible(int origin, int slice, int scrollPos)
+    {
+        return Math.max(0, indexAt(origin, slice, scrollPos - 1));
+    }
+
+    public static int lastVisible(int origin, int slice, int scrollPos, int length, int itemCount)
+    {
+        return Math.min(itemCount - 1, indexAt(origin, slice, scrollPos + length));
+    }
+
+    /*
+    * Index of the item nearest to center of page, in range of items,
+    * or -1 if there are no items.
+    * */
+    public static int centerIndex(int origin, int slice, int scrollPos, int length, int itemCount)
+    {
+        if (itemCount < 1) return -1;
+        int index = indexAt(origin, slice, scrollPos + length / 2);
+        return Math.max(0, Math.min(itemCount - 1, index));
+    }
+
+    /*
+    * Scroll position that brings item of given index to center.
+    * */
+    public static int scrollPosOfItem(int origin, int slice, int length, int index)
+    {
+        return origin + index * slice + slice / 2 - length / 2;
+    }
+
+    /*
+    * Wraps given value into [0, modulus), for cyclic wheels.
+    * */
+    public static int wrap(int value, int modulus)
+    {
+        int wrapped = value % modulus;
+        return (wrapped < 0) ? wrapped + modulus : wrapped;
+    }
+
+    /*
+    * Largest scroll position, the one that brings last item to center
+    * when page is 3 slices long.
+    * */
+    public static int maxScrollPos(int origin, int slice, int itemCount)
+    {
+        return origin + (itemCount - 2) * slice;
+    }
+}
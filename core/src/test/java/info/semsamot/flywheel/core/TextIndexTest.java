@@ -0,0 +1,183 @@
+package info.semsamot.flywheel.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextIndexTest {
+
+    private TextIndex index;
+
+    @Before
+    public void setUp() {
+        index = new TextIndex();
+        for (String text : new String[] { "Banana", "apple", "Cherry", "apple", "avocado" })
+        {
+            index.add(text);
+        }
+    }
+
+    @Test
+    public void exactLookupFindsFirstPosition() {
+        assertEquals(5, index.size());
+        assertEquals(0, index.indexOf("Banana"));
+        assertEquals(1, index.indexOf("apple"));
+        assertEquals(4, index.indexOf("avocado"));
+
+        // exact lookups are case sensitive
+        assertEquals(-1, index.indexOf("banana"));
+        assertEquals(-1, index.indexOf("kiwi"));
+    }
+
+    @Test
+    public void prefixLookupFindsLowerBound() {
+        // alphabetically first match, ignoring case
+        assertEquals(1, index.indexOfPrefix("a"));
+        assertEquals(4, index.indexOfPrefix("AV"));
+        assertEquals(0, index.indexOfPrefix("b"));
+        assertEquals(2, index.indexOfPrefix("cher"));
+        assertEquals(2, index.indexOfPrefix("Cherry"));
+
+        assertEquals(-1, index.indexOfPrefix("cherries"));
+        assertEquals(-1, index.indexOfPrefix("z"));
+        // lower bound of a prefix between texts
+        assertEquals(-1, index.indexOfPrefix("ab"));
+
+        // empty prefix matches the alphabetically first text
+        assertEquals(1, index.indexOfPrefix(""));
+    }
+
+    @Test
+    public void textsAddedAfterLookupAreMerged() {
+        assertEquals(1, index.indexOfPrefix("a"));
+
+        index.add("Aardvark");
+        index.add("date");
+        index.add("apple");
+
+        assertEquals(5, index.indexOfPrefix("a"));
+        assertEquals(6, index.indexOfPrefix("d"));
+        assertEquals(4, index.indexOfPrefix("av"));
+        // of equal texts the first one is found, also across merges
+        assertEquals(1, index.indexOfPrefix("apple"));
+        assertEquals(1, index.indexOf("apple"));
+    }
+
+    @Test
+    public void insertShiftsFollowingPositions() {
+        assertEquals(1, index.indexOfPrefix("app"));
+
+        index.insert(1, "Apricot");
+
+        assertEquals(6, index.size());
+        assertEquals(0, index.indexOf("Banana"));
+        assertEquals(1, index.indexOf("Apricot"));
+        assertEquals(2, index.indexOf("apple"));
+        assertEquals(3, index.indexOf("Cherry"));
+        assertEquals(5, index.indexOf("avocado"));
+
+        assertEquals(2, index.indexOfPrefix("app"));
+        assertEquals(1, index.indexOfPrefix("apr"));
+        assertEquals(3, index.indexOfPrefix("c"));
+    }
+
+    @Test
+    public void insertBeforeFirstOccurrenceBecomesFirst() {
+        index.insert(0, "apple");
+
+        assertEquals(0, index.indexOf("apple"));
+        assertEquals(0, index.indexOfPrefix("apple"));
+        assertEquals(1, index.indexOf("Banana"));
+    }
+
+    @Test
+    public void removeShiftsFollowingPositions() {
+        assertEquals(2, index.indexOfPrefix("c"));
+
+        index.remove(0);
+
+        assertEquals(4, index.size());
+        assertEquals(-1, index.indexOf("Banana"));
+        assertEquals(-1, index.indexOfPrefix("b"));
+        assertEquals(0, index.indexOf("apple"));
+        assertEquals(1, index.indexOfPrefix("c"));
+        assertEquals(3, index.indexOf("avocado"));
+    }
+
+    @Test
+    public void removeOfFirstOccurrenceFindsNextOne() {
+        index.indexOfPrefix("a");
+
+        index.remove(1);
+
+        // second "apple" has moved up from 3
+        assertEquals(2, index.indexOf("apple"));
+        assertEquals(2, index.indexOfPrefix("apple"));
+
+        index.remove(2);
+
+        assertEquals(-1, index.indexOf("apple"));
+        assertEquals(2, index.indexOfPrefix("a"));
+    }
+
+    @Test
+    public void removeOfUnmergedText() {
+        index.add("date");
+        index.remove(5);
+
+        assertEquals(-1, index.indexOf("date"));
+        assertEquals(-1, index.indexOfPrefix("d"));
+    }
+
+    @Test
+    public void setReplacesTextInPlace() {
+        index.indexOfPrefix("a");
+
+        index.set(1, "Fig");
+
+        assertEquals(5, index.size());
+        assertEquals(1, index.indexOf("Fig"));
+        assertEquals(1, index.indexOfPrefix("f"));
+        // other "apple" is the first one now
+        assertEquals(3, index.indexOf("apple"));
+        assertEquals(3, index.indexOfPrefix("a"));
+        assertEquals(0, index.indexOf("Banana"));
+    }
+
+    @Test
+    public void setToTextOfLaterItemMakesItFirst() {
+        index.set(0, "avocado");
+
+        assertEquals(0, index.indexOf("avocado"));
+        assertEquals(-1, index.indexOf("Banana"));
+        assertEquals(0, index.indexOfPrefix("av"));
+    }
+
+    @Test
+    public void clearEmptiesIndex() {
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertEquals(-1, index.indexOf("apple"));
+        assertEquals(-1, index.indexOfPrefix(""));
+
+        index.add("kiwi");
+        assertEquals(0, index.indexOfPrefix("k"));
+    }
+
+    // appends must not shift positions, or building an index is quadratic
+    @Test(timeout = 2000)
+    public void buildingLargeIndexIsLinear() {
+        final int count = 200000;
+        for (int i=0; i < count; i++)
+        {
+            index.add("item " + i);
+        }
+
+        assertEquals(count + 5, index.size());
+        assertEquals(5 + 123456, index.indexOf("item 123456"));
+        assertEquals(5 + 19999, index.indexOfPrefix("item 19999"));
+        assertEquals(1, index.indexOf("apple"));
+    }
+}
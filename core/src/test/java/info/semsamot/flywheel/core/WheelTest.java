@@ -0,0 +1,269 @@
+package info.semsamot.flywheel.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A vertical wheel 300 long has slices of 100 starting at 100, so item i
+ * is at center when scroll position is 100 * i.
+ */
+public class WheelTest {
+
+    private Wheel wheel;
+
+    @Before
+    public void setUp() {
+        wheel = new Wheel();
+        wheel.setSize(90, 300);
+        wheel.reset(10);
+    }
+
+    @Test
+    public void layout() {
+        assertTrue(wheel.isLaidOut());
+        assertEquals(100, wheel.getSlice());
+        assertEquals(100, wheel.getOrigin());
+        assertEquals(900, wheel.getMaxScrollPos());
+        assertEquals(0, wheel.getSelectedIndex());
+        assertEquals(500, wheel.scrollPosOfItem(5));
+    }
+
+    @Test
+    public void insertBeforeSelectionKeepsSelectedItemAndOffset() {
+        select(5, 20);
+
+        wheel.insertItem(2);
+
+        assertEquals(11, wheel.getItemCount());
+        assertEquals(6, wheel.getSelectedIndex());
+        assertEquals(620, wheel.getScrollPos());
+        assertEquals(1000, wheel.getMaxScrollPos());
+    }
+
+    @Test
+    public void insertAtSelectionMovesSelectionWithItem() {
+        select(5, 0);
+
+        wheel.insertItem(5);
+
+        assertEquals(6, wheel.getSelectedIndex());
+        assertEquals(600, wheel.getScrollPos());
+    }
+
+    @Test
+    public void insertAfterSelectionKeepsScrollPos() {
+        select(5, -30);
+
+        wheel.insertItem(7);
+
+        assertEquals(5, wheel.getSelectedIndex());
+        assertEquals(470, wheel.getScrollPos());
+    }
+
+    @Test
+    public void insertIntoEmptyWheelSelectsFirstItem() {
+        wheel.reset(0);
+        assertEquals(-1, wheel.getSelectedIndex());
+
+        wheel.insertItem(0);
+
+        assertEquals(1, wheel.getItemCount());
+        assertEquals(0, wheel.getSelectedIndex());
+        assertEquals(0, wheel.getScrollPos());
+    }
+
+    @Test
+    public void removeBeforeSelectionKeepsSelectedItemAndOffset() {
+        select(5, 20);
+
+        assertFalse(wheel.removeItem(2));
+
+        assertEquals(9, wheel.getItemCount());
+        assertEquals(4, wheel.getSelectedIndex());
+        assertEquals(420, wheel.getScrollPos());
+        assertEquals(800, wheel.getMaxScrollPos());
+    }
+
+    @Test
+    public void removeAfterSelectionKeepsScrollPos() {
+        select(5, 20);
+
+        assertFalse(wheel.removeItem(8));
+
+        assertEquals(5, wheel.getSelectedIndex());
+        assertEquals(520, wheel.getScrollPos());
+    }
+
+    @Test
+    public void removeSelectedItemSelectsNextOne() {
+        select(5, 20);
+
+        assertTrue(wheel.removeItem(5));
+
+        // next item has taken its index
+        assertEquals(5, wheel.getSelectedIndex());
+        assertEquals(520, wheel.getScrollPos());
+    }
+
+    @Test
+    public void removeSelectedLastItemSelectsPreviousOne() {
+        select(9, 0);
+
+        assertTrue(wheel.removeItem(9));
+
+        assertEquals(8, wheel.getSelectedIndex());
+        assertEquals(800, wheel.getScrollPos());
+    }
+
+    @Test
+    public void removeOnlyItemClearsSelection() {
+        wheel.reset(1);
+
+        assertTrue(wheel.removeItem(0));
+
+        assertEquals(0, wheel.getItemCount());
+        assertEquals(-1, wheel.getSelectedIndex());
+    }
+
+    @Test
+    public void scrollByStaysInBounds() {
+        assertFalse(wheel.scrollBy(-1));
+        assertEquals(0, wheel.getScrollPos());
+
+        assertTrue(wheel.scrollBy(900));
+        assertEquals(900, wheel.getScrollPos());
+
+        assertFalse(wheel.scrollBy(1));
+        assertEquals(900, wheel.getScrollPos());
+
+        assertTrue(wheel.scrollBy(-900));
+        assertEquals(0, wheel.getScrollPos());
+    }
+
+    @Test
+    public void centerIndexAtEnds() {
+        assertEquals(0, wheel.centerIndexAt(0));
+        assertEquals(0, wheel.centerIndexAt(-1000));
+        assertEquals(0, wheel.centerIndexAt(49));
+        assertEquals(1, wheel.centerIndexAt(50));
+
+        assertEquals(9, wheel.centerIndexAt(900));
+        assertEquals(9, wheel.centerIndexAt(100000));
+        assertEquals(8, wheel.centerIndexAt(849));
+    }
+
+    @Test
+    public void snapTargetOfEnds() {
+        assertEquals(0, wheel.snapTargetOf(-500));
+        assertEquals(0, wheel.snapTargetOf(49));
+        assertEquals(100, wheel.snapTargetOf(50));
+
+        assertEquals(900, wheel.snapTargetOf(5000));
+        assertEquals(900, wheel.snapTargetOf(850));
+        assertEquals(800, wheel.snapTargetOf(849));
+    }
+
+    @Test
+    public void emptyWheelHasNoCenter() {
+        wheel.reset(0);
+
+        assertEquals(-1, wheel.getCenterIndex());
+        assertEquals(37, wheel.snapTargetOf(37));
+    }
+
+    @Test
+    public void cyclicScrollPosIsNormalized() {
+        wheel.setCyclic(true);
+        assertEquals(1000, wheel.getContentLength());
+
+        wheel.setScrollPos(-250);
+        assertEquals(750, wheel.getScrollPos());
+
+        wheel.setScrollPos(2300);
+        assertEquals(300, wheel.getScrollPos());
+
+        // no bounds to stop at
+        assertTrue(wheel.isInBounds(-5000));
+        assertTrue(wheel.scrollBy(-400));
+        assertEquals(900, wheel.getScrollPos());
+        assertTrue(wheel.scrollBy(250));
+        assertEquals(150, wheel.getScrollPos());
+    }
+
+    @Test
+    public void cyclicToItemIndex() {
+        wheel.setCyclic(true);
+
+        assertEquals(9, wheel.toItemIndex(-1));
+        assertEquals(0, wheel.toItemIndex(10));
+        assertEquals(3, wheel.toItemIndex(23));
+        assertEquals(7, wheel.toItemIndex(-13));
+
+        wheel.setCyclic(false);
+        assertEquals(-1, wheel.toItemIndex(-1));
+    }
+
+    @Test
+    public void cyclicIsInWindow() {
+        wheel.setCyclic(true);
+
+        // virtual 8 to 11 are items 8, 9, 0 and 1
+        assertTrue(wheel.isInWindow(8, 8, 11));
+        assertTrue(wheel.isInWindow(0, 8, 11));
+        assertTrue(wheel.isInWindow(1, 8, 11));
+        assertFalse(wheel.isInWindow(2, 8, 11));
+        assertFalse(wheel.isInWindow(7, 8, 11));
+
+        assertTrue(wheel.isInWindow(9, -2, 1));
+        assertFalse(wheel.isInWindow(5, -2, 1));
+
+        wheel.setCyclic(false);
+        assertFalse(wheel.isInWindow(0, 8, 11));
+    }
+
+    @Test
+    public void cyclicVisibleIndicesRunPastEnds() {
+        wheel.setCyclic(true);
+        wheel.setScrollPos(0);
+
+        assertEquals(-2, wheel.getFirstVisibleIndex());
+        assertEquals(2, wheel.getLastVisibleIndex());
+        assertEquals(8, wheel.toItemIndex(wheel.getFirstVisibleIndex()));
+    }
+
+    @Test
+    public void cyclicCenterAndSnapTakeNearestRound() {
+        wheel.setCyclic(true);
+
+        assertEquals(0, wheel.centerIndexAt(950));
+        assertEquals(9, wheel.centerIndexAt(-100));
+        assertEquals(1000, wheel.snapTargetOf(950));
+        assertEquals(-100, wheel.snapTargetOf(-120));
+
+        // short way from last item to first one is forward
+        wheel.setScrollPos(900);
+        assertEquals(1000, wheel.scrollPosOfItem(0));
+        assertEquals(800, wheel.scrollPosOfItem(8));
+    }
+
+    @Test
+    public void cyclicInsertKeepsOffsetAndNormalizes() {
+        wheel.setCyclic(true);
+        select(9, 5);
+
+        wheel.insertItem(0);
+
+        assertEquals(10, wheel.getSelectedIndex());
+        assertEquals(1100, wheel.getContentLength());
+        assertEquals(1005, wheel.getScrollPos());
+    }
+
+    private void select(int index, int offset) {
+        wheel.setSelectedIndex(index);
+        wheel.setScrollPos(wheel.scrollPosOfItem(index) + offset);
+    }
+}